@@ -0,0 +1,53 @@
+import java.io.Serializable;
+
+// Cumulative counters of one password hashing pool. Each reader keeps the report it saw last and diffs
+// against it, so any number of readers can watch the same pool without taking each other's intervals.
+public class AuthStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final AuthStats NONE = new AuthStats(0, 0, 0, 0, 0);
+
+    private final long poolId;    // Tells whether two reports describe the same pool
+    private final int queueDepth; // Hashes running or waiting right now
+    private final long hashes;
+    private final long hashNanos;
+    private final long rejected;  // Turned away because the queue was full
+
+    public AuthStats(long poolId, int queueDepth, long hashes, long hashNanos, long rejected) {
+        this.poolId = poolId;
+        this.queueDepth = queueDepth;
+        this.hashes = hashes;
+        this.hashNanos = hashNanos;
+        this.rejected = rejected;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getHashes() {
+        return hashes;
+    }
+
+    public long getHashNanos() {
+        return hashNanos;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Both pools together; the same pool seen twice (a database embedded in this JVM) is only counted once
+    public AuthStats plus(AuthStats other) {
+        if (other.poolId == poolId) {
+            return this;
+        }
+        return new AuthStats(poolId, queueDepth + other.queueDepth, hashes + other.hashes,
+                hashNanos + other.hashNanos, rejected + other.rejected);
+    }
+
+    @Override
+    public String toString() {
+        return "AuthStats{queued=" + queueDepth + ", hashes=" + hashes + ", rejected=" + rejected + "}";
+    }
+}
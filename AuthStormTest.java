@@ -0,0 +1,62 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Login storm against the password hashing pool: many callers verify at once, the bounded queue takes what
+// it can and the rest are turned away as busy instead of queueing without limit. Prints the cost per hash,
+// how many logins got through and how many were rejected, and whether unknown users cost as much as known ones.
+// Usage: java AuthStormTest [logins] [hashThreads] [queueSize] [iterations]
+public class AuthStormTest {
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int queueSize = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 120000;
+
+        PasswordHasher hasher = new PasswordHasher(iterations, threads, queueSize, 60000);
+        String stored = hasher.hashNow("secret");
+
+        // Warm up, then time one check of a known and of an unknown user
+        for (int i = 0; i < 5; i++) {
+            hasher.verify("secret", stored);
+        }
+        long start = System.nanoTime();
+        boolean known = hasher.verify("secret", stored);
+        double knownMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        boolean unknown = hasher.verify("secret", null);
+        double unknownMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("Known user: %s in %.1f ms, unknown user: %s in %.1f ms%n", known, knownMillis, unknown, unknownMillis);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger busy = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < logins; i++) {
+            Thread caller = new Thread(() -> {
+                try {
+                    go.await();
+                    if (hasher.verify("secret", stored)) {
+                        succeeded.incrementAndGet();
+                    }
+                } catch (RemoteException e) {
+                    busy.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            caller.start();
+            callers.add(caller);
+        }
+        start = System.nanoTime();
+        go.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        System.out.printf("%d concurrent logins on %d threads, queue %d: %d succeeded, %d rejected as busy, %.0f ms%n",
+                logins, threads, queueSize, succeeded.get(), busy.get(), (System.nanoTime() - start) / 1e6);
+        System.out.println(hasher);
+    }
+}
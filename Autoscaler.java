@@ -0,0 +1,91 @@
+// Scaling decisions for the messaging server pool. The total load score is smoothed with Holt's linear
+// exponential smoothing (an EWMA of the level plus an EWMA of its trend) and projected a few ticks ahead,
+// so capacity is added while load is still climbing. Separate up and down thresholds give hysteresis,
+// cooldowns stop back-to-back actions, and the pool never leaves [minServers, maxServers].
+public class Autoscaler {
+    public enum Decision { SCALE_UP, SCALE_DOWN, HOLD }
+
+    private final int minServers;
+    private final int maxServers;
+    private final double scaleUpLoad;   // Forecast load per server above which a server is added
+    private final double scaleDownLoad; // Forecast load per server, with one server fewer, below which one is removed
+    private final long scaleUpCooldownMillis;
+    private final long scaleDownCooldownMillis;
+    private final double alpha;         // Smoothing of the level
+    private final double beta;          // Smoothing of the trend
+    private final int forecastTicks;
+
+    private boolean initialized;
+    private double level;
+    private double trend;
+    private long lastScaleUpMillis = Long.MIN_VALUE / 2;
+    private long lastScaleDownMillis = Long.MIN_VALUE / 2;
+
+    public Autoscaler(int minServers, int maxServers, double scaleUpLoad, double scaleDownLoad,
+                      long scaleUpCooldownMillis, long scaleDownCooldownMillis, double alpha, double beta, int forecastTicks) {
+        if (scaleDownLoad >= scaleUpLoad) {
+            throw new IllegalArgumentException("Scale-down load must be below scale-up load");
+        }
+        this.minServers = minServers;
+        this.maxServers = maxServers;
+        this.scaleUpLoad = scaleUpLoad;
+        this.scaleDownLoad = scaleDownLoad;
+        this.scaleUpCooldownMillis = scaleUpCooldownMillis;
+        this.scaleDownCooldownMillis = scaleDownCooldownMillis;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.forecastTicks = forecastTicks;
+    }
+
+    public static Autoscaler fromSystemProperties() {
+        return new Autoscaler(
+                Integer.getInteger("lb.minServers", 2),
+                Integer.getInteger("lb.maxServers", 8),
+                Double.parseDouble(System.getProperty("lb.scaleUpLoad", "50")),
+                Double.parseDouble(System.getProperty("lb.scaleDownLoad", "10")),
+                Long.getLong("lb.scaleUpCooldownMs", 30000),
+                Long.getLong("lb.scaleDownCooldownMs", 120000),
+                Double.parseDouble(System.getProperty("lb.ewmaAlpha", "0.3")),
+                Double.parseDouble(System.getProperty("lb.trendBeta", "0.2")),
+                Integer.getInteger("lb.forecastTicks", 3));
+    }
+
+    // Feed one observation of the pool's total load and decide; called once per capacity tick
+    public synchronized Decision observe(double totalLoad, int activeServers, long nowMillis) {
+        if (!initialized) {
+            level = totalLoad;
+            trend = 0;
+            initialized = true;
+        } else {
+            double previousLevel = level;
+            level = alpha * totalLoad + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+        }
+        double forecast = Math.max(level + trend * forecastTicks, 0);
+
+        if (activeServers < minServers) {
+            return Decision.SCALE_UP;
+        }
+        if (activeServers < maxServers && forecast / activeServers > scaleUpLoad
+                && nowMillis - lastScaleUpMillis >= scaleUpCooldownMillis) {
+            lastScaleUpMillis = nowMillis;
+            return Decision.SCALE_UP;
+        }
+        if (activeServers > minServers && forecast / (activeServers - 1) < scaleDownLoad
+                && nowMillis - lastScaleDownMillis >= scaleDownCooldownMillis
+                && nowMillis - lastScaleUpMillis >= scaleDownCooldownMillis) {
+            lastScaleDownMillis = nowMillis;
+            return Decision.SCALE_DOWN;
+        }
+        return Decision.HOLD;
+    }
+
+    public synchronized double getForecast() {
+        return Math.max(level + trend * forecastTicks, 0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Autoscaler{level=%.1f, trend=%.2f, forecast=%.1f}", level, trend, getForecast());
+    }
+}
@@ -0,0 +1,46 @@
+import java.io.Serializable;
+import java.time.Instant;
+
+// A message posted to a chatroom, numbered by the room's own sequence
+public class ChatMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String room;
+    private final long sequence;
+    private final String sender;
+    private final String text;
+    private final Instant timestamp;
+
+    public ChatMessage(String room, long sequence, String sender, String text, Instant timestamp) {
+        this.room = room;
+        this.sequence = sequence;
+        this.sender = sender;
+        this.text = text;
+        this.timestamp = timestamp;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatMessage{room='" + room + "', sequence=" + sequence + ", sender='" + sender + "', text='" + text + "', timestamp=" + timestamp + "}";
+    }
+}
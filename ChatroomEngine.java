@@ -0,0 +1,99 @@
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Chatrooms held on the database server: each room has a set of member usernames, its own message
+// sequence and a bounded ring buffer of recent messages for members who join late. Every operation
+// touches one room only, so posting to a large room never copies the others.
+public class ChatroomEngine {
+    private final int historyCapacity;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+
+    public ChatroomEngine(int historyCapacity) {
+        this.historyCapacity = historyCapacity;
+    }
+
+    public boolean create(String name) {
+        return rooms.putIfAbsent(name, new Room(name, historyCapacity)) == null;
+    }
+
+    public Set<String> names() {
+        return rooms.keySet();
+    }
+
+    // True if the user was added; false if they were already a member or the room does not exist
+    public boolean join(String name, String username) {
+        Room room = rooms.get(name);
+        return room != null && room.members.add(username);
+    }
+
+    // Copy of the room's members, null if the room does not exist
+    public List<String> members(String name) {
+        Room room = rooms.get(name);
+        return room == null ? null : new ArrayList<>(room.members);
+    }
+
+    // Number and record the message; null if the room does not exist
+    public ChatMessage post(String name, String sender, String text) {
+        Objects.requireNonNull(sender, "sender");
+        Room room = rooms.get(name);
+        return room == null ? null : room.append(sender, text);
+    }
+
+    // Retained messages with a sequence above afterSequence, oldest first; null if the room does not exist
+    public List<ChatMessage> history(String name, long afterSequence) {
+        Room room = rooms.get(name);
+        return room == null ? null : room.since(afterSequence);
+    }
+
+    // Room name -> member usernames, for snapshots
+    public Map<String, Set<String>> memberships() {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Room room : rooms.values()) {
+            copy.put(room.name, new HashSet<>(room.members));
+        }
+        return copy;
+    }
+
+    // Replace every room with the given memberships; history starts empty
+    public void replaceAll(Map<String, Set<String>> memberships) {
+        rooms.clear();
+        for (Map.Entry<String, Set<String>> entry : memberships.entrySet()) {
+            Room room = new Room(entry.getKey(), historyCapacity);
+            room.members.addAll(entry.getValue());
+            rooms.put(entry.getKey(), room);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return memberships().toString();
+    }
+
+    private static class Room {
+        final String name;
+        final Set<String> members = ConcurrentHashMap.newKeySet();
+        private final ChatMessage[] history; // Ring buffer, slot = sequence % capacity
+        private long lastSequence;
+
+        Room(String name, int historyCapacity) {
+            this.name = name;
+            this.history = new ChatMessage[Math.max(historyCapacity, 1)];
+        }
+
+        synchronized ChatMessage append(String sender, String text) {
+            ChatMessage message = new ChatMessage(name, ++lastSequence, sender, text, Instant.now());
+            history[(int) (lastSequence % history.length)] = message;
+            return message;
+        }
+
+        synchronized List<ChatMessage> since(long afterSequence) {
+            long first = Math.max(afterSequence + 1, Math.max(lastSequence - history.length + 1, 1));
+            List<ChatMessage> messages = new ArrayList<>((int) Math.max(lastSequence - first + 1, 0));
+            for (long sequence = first; sequence <= lastSequence; sequence++) {
+                messages.add(history[(int) (sequence % history.length)]);
+            }
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+// Hash each username onto a ring of virtual nodes, so a user keeps landing on the same server and only
+// about 1/n of users move when a server joins or leaves. Sessions without a username fall back to
+// power-of-two choices.
+public class ConsistentHashing implements LoadBalancingStrategy {
+    private final int virtualNodes;
+    private final LoadBalancingStrategy fallback = new PowerOfTwoChoices();
+    private volatile Ring ring = new Ring(new int[0], 0);
+
+    public ConsistentHashing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    @Override
+    public int choose(int[] ports, IntUnaryOperator load, String key) {
+        if (key == null || ports.length == 0) {
+            return fallback.choose(ports, load, key);
+        }
+        Ring current = ring;
+        if (current.ports != ports) {
+            current = new Ring(ports, virtualNodes);
+            ring = current;
+        }
+        Map.Entry<Integer, Integer> node = current.nodes.ceilingEntry(hash(key));
+        return (node != null ? node : current.nodes.firstEntry()).getValue();
+    }
+
+    @Override
+    public boolean isKeyed() {
+        return true;
+    }
+
+    // FNV-1a with a final avalanche, stable across JVMs unlike String.hashCode spreading
+    private static int hash(String value) {
+        int hash = 0x811c9dc5;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static class Ring {
+        final int[] ports;
+        final NavigableMap<Integer, Integer> nodes = new TreeMap<>(); // ring position -> port
+
+        Ring(int[] ports, int virtualNodes) {
+            this.ports = ports;
+            for (int port : ports) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    nodes.put(hash(port + "#" + i), port);
+                }
+            }
+        }
+    }
+}
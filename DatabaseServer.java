@@ -1,12 +1,27 @@
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.Instant;
 import java.util.*;
 
 public interface DatabaseServer extends Remote {
     // Write methods to update the state in the database
     boolean registerUser(String username, String password) throws RemoteException;
 
-    boolean loginUser(String username, String password) throws RemoteException;
+    // Counters of the database's password hashing pool, which all logins go through
+    AuthStats getAuthStats() throws RemoteException;
+
+    // Checks the password on the database's hashing pool and upgrades an outdated stored hash; stored hashes
+    // never leave the database
+    boolean verifyPassword(String username, String password) throws RemoteException;
+
+    boolean accountExists(String username) throws RemoteException;
+
+    // Session tokens for users whose password has been checked; a token resolves to its username
+    String createSession(String username) throws RemoteException;
+
+    String resumeSession(String token) throws RemoteException; // null if unknown or expired
+
+    boolean endSession(String token) throws RemoteException;
 
     void saveClients(List<MessagingClient> clients) throws RemoteException;
 
@@ -20,18 +35,99 @@ public interface DatabaseServer extends Remote {
 
     void saveOnlineUsers(Map<MessagingClient, String> onlineUsers) throws RemoteException;
 
+    // Delta methods: each call carries only the change, so servers never overwrite each other's writes
+    Post appendPost(String username, String content) throws RemoteException;
+
+    Post incrementLikes(int postId) throws RemoteException;
+
+    Post addComment(int postId, String comment) throws RemoteException;
+
+    boolean removePost(int postId) throws RemoteException;
+
+    Story appendStory(String username, String content, int durationInSeconds) throws RemoteException;
+
+    void addClient(MessagingClient client) throws RemoteException;
+
+    void addOnlineUser(MessagingClient client, String username) throws RemoteException;
+
+    boolean removeOnlineUser(String username) throws RemoteException;
+
+    // Heartbeat: extends the user's session, false if it already expired and the user must log in again
+    boolean touchOnlineUser(String username) throws RemoteException;
+
+    void addUser(String username) throws RemoteException;
+
+    boolean addFollower(String followee, String follower) throws RemoteException;
+
+    boolean removeFollower(String followee, String follower) throws RemoteException;
+
+    boolean createChatroom(String roomName) throws RemoteException;
+
+    // Joins as the client's logged-in user; false if the room does not exist, the client is not logged in or
+    // the user is already a member
+    boolean addChatroomMember(String roomName, MessagingClient client) throws RemoteException;
+
+    boolean joinChatroom(String roomName, String username) throws RemoteException; // False if nothing changed
+
+    // Numbers the message and keeps it in the room's history; null if the room does not exist
+    ChatMessage postChatMessage(String roomName, String sender, String text) throws RemoteException;
+
     // Read methods to retrieve the current state
     List<MessagingClient> getClients() throws RemoteException;
 
     List<Post> getPosts() throws RemoteException;
 
+    // Home timeline of a user (own posts and followed users' posts), newest first, one page at a time
+    PostPage getTimeline(String username, String cursor, int limit) throws RemoteException;
+
+    // Posts matching every non-null filter, newest first, one page at a time
+    PostPage searchPosts(String keyword, String username, Instant startTime, Instant endTime, String cursor, int limit) throws RemoteException;
+
     int getPostId() throws RemoteException;
 
     Map<String, List<MessagingClient>> getChatrooms() throws RemoteException;
 
     Map<String, Set<String>> getFollowers() throws RemoteException;
 
+    // Follower sets of just the given users
+    Map<String, Set<String>> getFollowersOf(Collection<String> usernames) throws RemoteException;
+
+    List<String> getFollowing(String username) throws RemoteException;
+
+    int getFollowerCount(String username) throws RemoteException;
+
+    // Users who follow this user and are followed back
+    List<String> getMutualFollows(String username) throws RemoteException;
+
+    // Only stories that have not expired yet
     List<Story> getStories() throws RemoteException;
 
+    // Up to limit unexpired stories by the given authors, soonest to expire first
+    List<Story> getStoriesBy(Collection<String> authors, int limit) throws RemoteException;
+
     Map<MessagingClient, String> getOnlineUsers() throws RemoteException;
+
+    List<String> getOnlineUsernames() throws RemoteException;
+
+    // Point reads so callers don't have to copy a whole collection to find one entry
+    Post getPost(int postId) throws RemoteException;
+
+    Story getStory(int storyId) throws RemoteException;
+
+    List<String> getChatroomNames() throws RemoteException;
+
+    // Clients of the room's online members, null if the room does not exist
+    List<MessagingClient> getChatroomMembers(String roomName) throws RemoteException;
+
+    List<String> getChatroomMemberNames(String roomName) throws RemoteException;
+
+    // Recent messages after a sequence number, oldest first, for members catching up
+    List<ChatMessage> getChatHistory(String roomName, long afterSequence) throws RemoteException;
+
+    // The online users among the given names, with their clients
+    Map<String, MessagingClient> getOnlineClients(Collection<String> usernames) throws RemoteException;
+
+    MessagingClient getOnlineClient(String username) throws RemoteException;
+
+    String getOnlineUsername(MessagingClient client) throws RemoteException;
 }
\ No newline at end of file
@@ -1,31 +1,105 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 
 public class DatabaseServerImpl extends UnicastRemoteObject implements DatabaseServer {
 
-    private final List <Account> accounts = new ArrayList<>();
-    private final List<MessagingClient> clients = new ArrayList<>();
-    private final List<Post> posts = new ArrayList<>();
-    private final Map<String, List<MessagingClient>> chatrooms = new HashMap<>();
-    private final Map<String, Set<String>> followers = new HashMap<>();
-    private final List<Story> stories = new ArrayList<>();
-    private final Map<MessagingClient, String> onlineUsers = new HashMap<>();
+    // Each data family is its own concurrent structure, so a read or write on one family never waits on another
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>(); // username -> account
+    private final Set<MessagingClient> clients = ConcurrentHashMap.newKeySet(); // Re-registering is a no-op, logout removes
+    private final PostStore posts = new PostStore(); // Indexed by ID, author and time
+    private final ChatroomEngine chatrooms = new ChatroomEngine(Integer.getInteger("chat.historySize", 100)); // Members by username
+    private final FollowerGraph followers = new FollowerGraph(); // Both directions, as sorted arrays of interned ids
+    private final StoryStore stories = new StoryStore(); // Indexed by ID and ordered by expiry time
+    private final PasswordHasher passwords = PasswordHasher.shared(); // Bounded pool, logins never hash on RMI threads
+    private final SessionTokenStore sessions = new SessionTokenStore(Long.getLong("auth.sessionTtlMs", 12 * 60 * 60 * 1000L));
+    private final PresenceService presence = PresenceService.fromSystemProperties(); // Sharded by username, sessions expire without heartbeats
+    private final AtomicInteger lastContentId = new AtomicInteger(); // Shared by posts and stories so their IDs never collide
+    private final TimelineStore timelines = new TimelineStore(
+            Integer.getInteger("timeline.capacity", 500),
+            Integer.getInteger("timeline.celebrityThreshold", 10000),
+            Integer.getInteger("timeline.demoteThreshold", 9000));
+    // Backfills after a celebrity demotion run here, outside the mutation locks
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timeline-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
 
+    // Write-ahead log record types
+    private static final byte OP_REGISTER = 1;
+    private static final byte OP_APPEND_POST = 2;
+    private static final byte OP_LIKE = 3;
+    private static final byte OP_COMMENT = 4;
+    private static final byte OP_REMOVE_POST = 5;
+    private static final byte OP_APPEND_STORY = 6;
+    private static final byte OP_ADD_USER = 7;
+    private static final byte OP_ADD_FOLLOWER = 8;
+    private static final byte OP_REMOVE_FOLLOWER = 9;
+    private static final byte OP_CREATE_CHATROOM = 10;
+    private static final byte OP_JOIN_CHATROOM = 11;
+    private static final byte OP_SET_PASSWORD = 12;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String POST_SEGMENT_PREFIX = "posts-";
+    private static final String POST_SEGMENT_SUFFIX = ".seg";
+
+    private final Path dataDirectory; // null when running purely in memory
+    private final WriteAheadLog wal;
+    // Logged mutations share the read side; a checkpoint takes the write side for a consistent cut
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object checkpointMonitor = new Object();
+    // Mutations of the same key apply and log under one stripe, so the WAL replays them in the order they ran
+    private final Object[] mutationLocks = newLocks(64);
+
+    // In-memory only, nothing survives a restart
     protected DatabaseServerImpl() throws RemoteException {
         super();
+        this.dataDirectory = null;
+        this.wal = null;
+    }
+
+    // Durable: recovers from the latest snapshot plus the WAL tail, then logs every mutation
+    protected DatabaseServerImpl(Path dataDirectory, long fsyncIntervalMillis, int fsyncBatchSize) throws IOException {
+        super();
+        this.dataDirectory = dataDirectory;
+        recover();
+        rebuildTimelines();
+        this.wal = new WriteAheadLog(dataDirectory, fsyncIntervalMillis, fsyncBatchSize);
     }
 
     // Write methods to update the state in the database
     @Override
-    public synchronized boolean registerUser(String username, String password) throws RemoteException {
+    public boolean registerUser(String username, String password) throws RemoteException {
         try {
-            // Store the account with the hashed password
-            this.accounts.add(new Account(username, password));
+            // Store the account with the hashed password, usernames are unique
+            boolean registered = durably(username, () -> {
+                if (this.accounts.putIfAbsent(username, new Account(username, password)) != null) {
+                    return false;
+                }
+                log(OP_REGISTER, username, password);
+                return true;
+            });
+            if (!registered) {
+                System.out.println("Username already taken: " + username);
+                return false;
+            }
             System.out.println("Registered new account: " + username);
             return true;
         } catch (Exception e) {
@@ -35,123 +109,761 @@ public class DatabaseServerImpl extends UnicastRemoteObject implements DatabaseS
     }
 
     @Override
-    public synchronized boolean loginUser(String username, String password) throws RemoteException {
-        try {
-            // Search for an account with the matching username and hashed password
-            for (Account account : this.accounts) {
-                if (account.getUsername().equals(username) && account.getPassword().equals(password)) {
-                    System.out.println("User logged in successfully: " + username);
-                    return true; // User found, login successful
-                }
-            }
+    public boolean verifyPassword(String username, String password) throws RemoteException {
+        Account account = accounts.get(username);
+        String stored = account == null ? null : account.getPassword();
+        if (!passwords.verify(password, stored)) { // Unknown users are checked against a dummy hash
             System.out.println("Login failed for user: " + username);
-            return false; // No matching user found
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false; // Handle any unexpected errors
+            return false;
         }
+        if (passwords.needsRehash(stored)) {
+            updatePasswordHash(username, passwords.hash(password)); // Legacy or cheaper hash, upgrade it now we have the password
+        }
+        return true;
+    }
+
+    @Override
+    public AuthStats getAuthStats() throws RemoteException {
+        return passwords.stats();
+    }
+
+    @Override
+    public boolean accountExists(String username) throws RemoteException {
+        return accounts.containsKey(username);
+    }
+
+    private boolean updatePasswordHash(String username, String passwordHash) throws RemoteException {
+        return durably(username, () -> {
+            if (accounts.computeIfPresent(username, (name, account) -> new Account(name, passwordHash)) == null) {
+                return false;
+            }
+            log(OP_SET_PASSWORD, username, passwordHash);
+            return true;
+        });
+    }
+
+    @Override
+    public String createSession(String username) throws RemoteException {
+        return sessions.create(username);
     }
 
     @Override
-    public synchronized void saveClients(List<MessagingClient> clients) throws RemoteException {
+    public String resumeSession(String token) throws RemoteException {
+        return sessions.validate(token);
+    }
+
+    @Override
+    public boolean endSession(String token) throws RemoteException {
+        return sessions.revoke(token);
+    }
+
+    @Override
+    public void saveClients(List<MessagingClient> clients) throws RemoteException {
         this.clients.clear();
         this.clients.addAll(clients);
         System.out.println("Updated clients: " + this.clients);
     }
 
     @Override
-    public synchronized void savePosts(List<Post> posts) throws RemoteException {
-        this.posts.clear();
-        this.posts.addAll(posts);
+    public void savePosts(List<Post> posts) throws RemoteException {
+        this.posts.replaceAll(posts);
         System.out.println("Updated posts: " + this.posts);
+        checkpointQuietly(); // Bulk replacements are not logged record by record
     }
 
     @Override
-    public synchronized void saveChatrooms(Map<String, List<MessagingClient>> chatrooms) throws RemoteException {
-        this.chatrooms.clear();
-        this.chatrooms.putAll(chatrooms);
+    public void saveChatrooms(Map<String, List<MessagingClient>> chatrooms) throws RemoteException {
+        Map<String, Set<String>> memberships = new HashMap<>();
+        for (Map.Entry<String, List<MessagingClient>> entry : chatrooms.entrySet()) {
+            Set<String> members = new HashSet<>();
+            for (MessagingClient client : entry.getValue()) {
+                String username = presence.username(client);
+                if (username != null) { // Members are kept by name, clients that are not logged in have none
+                    members.add(username);
+                }
+            }
+            memberships.put(entry.getKey(), members);
+        }
+        this.chatrooms.replaceAll(memberships);
         System.out.println("Updated chatrooms: " + this.chatrooms);
+        checkpointQuietly();
     }
 
     @Override
-    public synchronized void saveFollowers(Map<String, Set<String>> followers) throws RemoteException {
-        this.followers.clear();
-        this.followers.putAll(followers);
+    public void saveFollowers(Map<String, Set<String>> followers) throws RemoteException {
+        this.followers.replaceAll(followers);
         System.out.println("Updated followers: " + this.followers);
+        rebuildTimelines();
+        checkpointQuietly();
     }
 
     @Override
-    public synchronized void saveStories(List<Story> stories) throws RemoteException {
-        this.stories.clear();
-        this.stories.addAll(stories);
+    public void saveStories(List<Story> stories) throws RemoteException {
+        this.stories.replaceAll(stories);
         System.out.println("Updated stories: " + this.stories);
+        checkpointQuietly();
+    }
+
+    @Override
+    public void saveOnlineUsers(Map<MessagingClient, String> onlineUsers) throws RemoteException {
+        presence.replaceAll(onlineUsers);
+        System.out.println("Updated online users: " + presence);
     }
 
+    // Delta methods: apply a single change in place instead of replacing the whole collection
     @Override
-    public synchronized void saveOnlineUsers(Map<MessagingClient, String> onlineUsers) throws RemoteException {
-        this.onlineUsers.clear();
-        this.onlineUsers.putAll(onlineUsers);
-        System.out.println("Updated online users: " + this.onlineUsers);
+    public Post appendPost(String username, String content) throws RemoteException {
+        Post post = durably(username, () -> {
+            Post created = new Post(username, content, lastContentId.incrementAndGet());
+            log(OP_APPEND_POST, created.getId(), username, content, created.getTimestamp());
+            posts.add(created); // Logged before it is visible, so later likes and comments replay after it
+            return created;
+        });
+        fanOut(post);
+        System.out.println("Appended post " + post.getId() + " by " + username);
+        return post;
+    }
+
+    @Override
+    public Post incrementLikes(int postId) throws RemoteException {
+        return durably(postId, () -> {
+            Post post = posts.get(postId);
+            if (post != null) {
+                post.addLike();
+                log(OP_LIKE, postId);
+            }
+            return post;
+        });
+    }
+
+    @Override
+    public Post addComment(int postId, String comment) throws RemoteException {
+        return durably(postId, () -> {
+            Post post = posts.get(postId);
+            if (post != null) {
+                post.addComment(comment);
+                log(OP_COMMENT, postId, comment);
+            }
+            return post;
+        });
+    }
+
+    @Override
+    public boolean removePost(int postId) throws RemoteException {
+        return durably(postId, () -> {
+            boolean removed = posts.remove(postId) != null;
+            if (removed) {
+                log(OP_REMOVE_POST, postId);
+            }
+            return removed;
+        });
+    }
+
+    @Override
+    public Story appendStory(String username, String content, int durationInSeconds) throws RemoteException {
+        Story story = durably(username, () -> {
+            Story created = new Story(lastContentId.incrementAndGet(), username, content, durationInSeconds);
+            log(OP_APPEND_STORY, created.getId(), username, content, created.getExpiryTime());
+            stories.add(created);
+            return created;
+        });
+        System.out.println("Appended story " + story.getId() + " by " + username);
+        return story;
+    }
+
+    @Override
+    public void addClient(MessagingClient client) throws RemoteException {
+        clients.add(client);
+    }
+
+    @Override
+    public void addOnlineUser(MessagingClient client, String username) throws RemoteException {
+        presence.login(username, client, clients::remove); // Replaces any previous session of this user
+        System.out.println("User online: " + username);
+    }
+
+    @Override
+    public boolean removeOnlineUser(String username) throws RemoteException {
+        if (!presence.logout(username, clients::remove)) {
+            return false;
+        }
+        System.out.println("User offline: " + username);
+        return true;
+    }
+
+    @Override
+    public boolean touchOnlineUser(String username) throws RemoteException {
+        return presence.heartbeat(username);
+    }
+
+    @Override
+    public void addUser(String username) throws RemoteException {
+        if (!followers.contains(username)) {
+            durably(username, () -> {
+                if (followers.addUser(username)) {
+                    log(OP_ADD_USER, username);
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean addFollower(String followee, String follower) throws RemoteException {
+        return durably(followee, () -> {
+            if (!followers.contains(followee)) {
+                return false; // Followee is not a known user
+            }
+            followers.follow(follower, followee);
+            log(OP_ADD_FOLLOWER, followee, follower);
+            if (!timelines.updateCelebrity(followee, followers.followerCount(followee))) {
+                timelines.backfill(follower, posts.recentByAuthor(followee, null, timelines.getCapacity()));
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeFollower(String followee, String follower) throws RemoteException {
+        boolean removed = durably(followee, () -> {
+            if (!followers.contains(followee)) {
+                return false;
+            }
+            followers.unfollow(follower, followee);
+            log(OP_REMOVE_FOLLOWER, followee, follower);
+            return true;
+        });
+        if (removed && timelines.demote(followee, followers.followerCount(followee))) {
+            backfillExecutor.execute(() -> backfillDemoted(followee));
+        }
+        return removed;
+    }
+
+    // A demoted author's posts from the celebrity era were never fanned out, so push them now
+    private void backfillDemoted(String author) {
+        try {
+            List<Post> recent = posts.recentByAuthor(author, null, timelines.getCapacity());
+            for (String follower : followers.followers(author)) {
+                timelines.backfill(follower, recent);
+            }
+        } finally {
+            timelines.finishDemotion(author);
+        }
+    }
+
+    @Override
+    public boolean createChatroom(String roomName) throws RemoteException {
+        return durably(roomName, () -> {
+            boolean created = chatrooms.create(roomName);
+            if (created) {
+                log(OP_CREATE_CHATROOM, roomName);
+            }
+            return created;
+        });
+    }
+
+    @Override
+    public boolean addChatroomMember(String roomName, MessagingClient client) throws RemoteException {
+        String username = presence.username(client);
+        return username != null && joinChatroom(roomName, username);
+    }
+
+    @Override
+    public boolean joinChatroom(String roomName, String username) throws RemoteException {
+        return durably(roomName, () -> {
+            boolean joined = chatrooms.join(roomName, username);
+            if (joined) {
+                log(OP_JOIN_CHATROOM, roomName, username);
+            }
+            return joined;
+        });
+    }
+
+    @Override
+    public ChatMessage postChatMessage(String roomName, String sender, String text) throws RemoteException {
+        return chatrooms.post(roomName, sender, text); // History is kept in memory only
     }
 
     // Read methods to retrieve the current state
     @Override
-    public synchronized List<MessagingClient> getClients() throws RemoteException {
+    public List<MessagingClient> getClients() throws RemoteException {
         return new ArrayList<>(clients); // Return a copy to avoid modification of the original list
     }
 
     @Override
-    public synchronized List<Post> getPosts() throws RemoteException {
-        return new ArrayList<>(posts); // Return a copy to avoid modification of the original list
+    public List<Post> getPosts() throws RemoteException {
+        return posts.listByTime(); // Return a copy to avoid modification of the original list
     }
 
     @Override
-    public synchronized int getPostId() throws RemoteException {
-        return posts.size();
+    public PostPage getTimeline(String username, String cursor, int limit) throws RemoteException {
+        Post after = PostPage.decodeCursor(cursor);
+        NavigableSet<Post> merged = new TreeSet<>(PostStore.TIME_ORDER.reversed());
+
+        // Precomputed part; unfollows and deletes are applied lazily here instead of at write time
+        for (Post post : timelines.read(username)) {
+            if (posts.get(post.getId()) == post && isVisibleTo(post.getUsername(), username)) {
+                merged.add(post);
+            }
+        }
+
+        // Celebrity authors were not fanned out, merge in the newest posts of the ones this reader follows
+        for (String followee : followers.following(username)) {
+            if (timelines.isMergedOnRead(followee)) {
+                merged.addAll(posts.recentByAuthor(followee, after, limit + 1));
+            }
+        }
+
+        return PostPage.of(after == null ? merged.iterator() : merged.tailSet(after, false).iterator(), limit);
     }
 
     @Override
-    public synchronized Map<String, List<MessagingClient>> getChatrooms() throws RemoteException {
-        return new HashMap<>(chatrooms); // Return a copy of the chatrooms map
+    public PostPage searchPosts(String keyword, String username, Instant startTime, Instant endTime, String cursor, int limit) throws RemoteException {
+        return PostPage.of(posts.search(keyword, username, startTime, endTime, PostPage.decodeCursor(cursor)), limit);
+    }
+
+    private boolean isVisibleTo(String author, String reader) {
+        return author.equals(reader) || followers.follows(reader, author);
     }
 
     @Override
-    public synchronized Map<String, Set<String>> getFollowers() throws RemoteException {
-        return new HashMap<>(followers); // Return a copy of the followers map
+    public int getPostId() throws RemoteException {
+        return lastContentId.get();
     }
 
     @Override
-    public synchronized List<Story> getStories() throws RemoteException {
-        return new ArrayList<>(stories); // Return a copy to avoid modification of the original list
+    public Map<String, List<MessagingClient>> getChatrooms() throws RemoteException {
+        // Every room with the clients of its online members
+        Map<String, List<MessagingClient>> copy = new HashMap<>();
+        for (String roomName : chatrooms.names()) {
+            copy.put(roomName, getChatroomMembers(roomName));
+        }
+        return copy;
     }
 
     @Override
-    public synchronized Map<MessagingClient, String> getOnlineUsers() throws RemoteException {
-        return new HashMap<>(onlineUsers); // Return a copy of the online users map
+    public Map<String, Set<String>> getFollowers() throws RemoteException {
+        return followers.toMap(); // A copy of the whole graph, prefer the per-user queries below
     }
 
-    // Utility method to hash the password
-    private String hashPassword(String password) throws NoSuchAlgorithmException {
-        // Use SHA-256 hashing algorithm
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = md.digest(password.getBytes());
+    @Override
+    public Map<String, Set<String>> getFollowersOf(Collection<String> usernames) throws RemoteException {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (String username : usernames) {
+            result.put(username, new HashSet<>(followers.followers(username)));
+        }
+        return result;
+    }
 
-        // Convert byte array into a Base64 encoded string for storage
-        return Base64.getEncoder().encodeToString(hashBytes);
+    @Override
+    public List<String> getFollowing(String username) throws RemoteException {
+        return followers.following(username);
+    }
+
+    @Override
+    public int getFollowerCount(String username) throws RemoteException {
+        return followers.followerCount(username);
+    }
+
+    @Override
+    public List<String> getMutualFollows(String username) throws RemoteException {
+        return followers.mutuals(username);
+    }
+
+    @Override
+    public List<Story> getStories() throws RemoteException {
+        return stories.live(Instant.now()); // A copy, with one clock read for the whole list
+    }
+
+    @Override
+    public List<Story> getStoriesBy(Collection<String> authors, int limit) throws RemoteException {
+        return stories.liveBy(authors, Instant.now(), limit);
+    }
+
+    @Override
+    public Map<MessagingClient, String> getOnlineUsers() throws RemoteException {
+        return presence.all(); // A copy
+    }
+
+    @Override
+    public Post getPost(int postId) throws RemoteException {
+        return posts.get(postId);
+    }
+
+    @Override
+    public Story getStory(int storyId) throws RemoteException {
+        return stories.get(storyId, Instant.now());
+    }
+
+    @Override
+    public List<String> getChatroomNames() throws RemoteException {
+        return new ArrayList<>(chatrooms.names());
+    }
+
+    @Override
+    public List<MessagingClient> getChatroomMembers(String roomName) throws RemoteException {
+        List<String> members = chatrooms.members(roomName);
+        return members == null ? null : new ArrayList<>(getOnlineClients(members).values());
+    }
+
+    @Override
+    public List<String> getChatroomMemberNames(String roomName) throws RemoteException {
+        return chatrooms.members(roomName);
+    }
+
+    @Override
+    public List<ChatMessage> getChatHistory(String roomName, long afterSequence) throws RemoteException {
+        return chatrooms.history(roomName, afterSequence);
+    }
+
+    @Override
+    public Map<String, MessagingClient> getOnlineClients(Collection<String> usernames) throws RemoteException {
+        return presence.online(usernames);
+    }
+
+    @Override
+    public List<String> getOnlineUsernames() throws RemoteException {
+        return presence.usernames();
+    }
+
+    @Override
+    public MessagingClient getOnlineClient(String username) throws RemoteException {
+        return presence.client(username); // null if the user is offline
+    }
+
+    @Override
+    public String getOnlineUsername(MessagingClient client) throws RemoteException {
+        return presence.username(client);
+    }
+
+    // Persistence: every logged mutation runs inside durably() and appends its record with log()
+    private <T> T durably(Object key, Supplier<T> mutation) {
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (mutationLocks[Math.floorMod(key.hashCode(), mutationLocks.length)]) {
+                return mutation.get();
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    private static Object[] newLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private void log(byte op, Object... fields) {
+        if (wal == null) {
+            return; // In-memory mode, or replaying during recovery
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            for (Object field : fields) {
+                if (field instanceof Integer) {
+                    out.writeInt((Integer) field);
+                } else if (field instanceof Instant) {
+                    out.writeLong(((Instant) field).getEpochSecond());
+                    out.writeInt(((Instant) field).getNano());
+                } else {
+                    byte[] utf8 = ((String) field).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen for an in-memory stream
+        }
+        wal.append(bytes.toByteArray());
+    }
+
+    // Replay one WAL record directly against the in-memory state
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case OP_REGISTER:
+            case OP_SET_PASSWORD: {
+                String username = readString(in);
+                accounts.put(username, new Account(username, readString(in)));
+                break;
+            }
+            case OP_APPEND_POST: {
+                int id = in.readInt();
+                String username = readString(in);
+                String content = readString(in);
+                posts.add(new Post(id, username, content, readInstant(in)));
+                lastContentId.accumulateAndGet(id, Math::max);
+                break;
+            }
+            case OP_LIKE: {
+                Post post = posts.get(in.readInt());
+                if (post != null) {
+                    post.addLike();
+                }
+                break;
+            }
+            case OP_COMMENT: {
+                Post post = posts.get(in.readInt());
+                String comment = readString(in);
+                if (post != null) {
+                    post.addComment(comment);
+                }
+                break;
+            }
+            case OP_REMOVE_POST:
+                posts.remove(in.readInt());
+                break;
+            case OP_APPEND_STORY: {
+                int id = in.readInt();
+                String username = readString(in);
+                String content = readString(in);
+                stories.add(new Story(id, username, content, readInstant(in)));
+                lastContentId.accumulateAndGet(id, Math::max);
+                break;
+            }
+            case OP_ADD_USER:
+                followers.addUser(readString(in));
+                break;
+            case OP_ADD_FOLLOWER: {
+                String followee = readString(in);
+                String follower = readString(in);
+                followers.addUser(followee);
+                followers.follow(follower, followee);
+                break;
+            }
+            case OP_REMOVE_FOLLOWER: {
+                String followee = readString(in);
+                followers.unfollow(readString(in), followee);
+                break;
+            }
+            case OP_CREATE_CHATROOM:
+                chatrooms.create(readString(in));
+                break;
+            case OP_JOIN_CHATROOM: {
+                String roomName = readString(in);
+                chatrooms.join(roomName, readString(in));
+                break;
+            }
+            default:
+                throw new IOException("Unknown WAL record type: " + op);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        return Instant.ofEpochSecond(seconds, in.readInt());
+    }
+
+    // Write a compacted snapshot and drop the WAL segments it covers
+    public void checkpoint() throws IOException {
+        if (wal == null) {
+            return;
+        }
+        synchronized (checkpointMonitor) {
+            byte[] image;
+            byte[] postImage;
+            long firstUncoveredSegment;
+            String postSegmentFile;
+            checkpointLock.writeLock().lock();
+            try {
+                // No logged mutation is running, so the state matches exactly the segments before the roll
+                firstUncoveredSegment = wal.roll();
+                postSegmentFile = POST_SEGMENT_PREFIX + firstUncoveredSegment + POST_SEGMENT_SUFFIX;
+
+                ByteArrayOutputStream postBytes = new ByteArrayOutputStream();
+                PostSegment.write(posts.listByTime(), postBytes);
+                postImage = postBytes.toByteArray();
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(captureSnapshot(firstUncoveredSegment, postSegmentFile));
+                }
+                image = bytes.toByteArray();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+
+            // The post segment must be on disk before the snapshot that names it
+            writeDurably(postSegmentFile, postImage);
+            writeDurably(SNAPSHOT_FILE, image);
+            wal.deleteSegmentsBefore(firstUncoveredSegment);
+            deleteOldPostSegments(postSegmentFile);
+            System.out.println("Checkpoint written, WAL resumes at segment " + firstUncoveredSegment);
+        }
+    }
+
+    // Timelines are derived data, rebuild them from the posts and the follower graph
+    private void rebuildTimelines() {
+        timelines.clear();
+        for (Post post : posts.listByTime()) {
+            fanOut(post);
+        }
+    }
+
+    // Only look the follower list up for authors below the celebrity threshold
+    private void fanOut(Post post) {
+        String author = post.getUsername();
+        if (timelines.updateCelebrity(author, followers.followerCount(author))) {
+            timelines.fanOut(post, Collections.emptyList());
+        } else {
+            timelines.fanOut(post, followers.followers(author));
+        }
+    }
+
+    private void writeDurably(String fileName, byte[] image) throws IOException {
+        Path temporary = dataDirectory.resolve(fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            out.write(image);
+            out.getFD().sync();
+        }
+        Files.move(temporary, dataDirectory.resolve(fileName),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        WriteAheadLog.syncDirectory(dataDirectory); // The rename itself is only durable once the directory is
+    }
+
+    private void deleteOldPostSegments(String currentFile) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dataDirectory, POST_SEGMENT_PREFIX + "*" + POST_SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(currentFile)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.err.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    // Background upkeep: periodic snapshots, story and session expiry, and compaction of cold time partitions
+    public void startMaintenance(long snapshotIntervalSeconds, long coldPartitionAgeMinutes) {
+        ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceExecutor.scheduleWithFixedDelay(this::checkpointQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        maintenanceExecutor.scheduleWithFixedDelay(() -> stories.evictExpired(Instant.now()), 1, 1, TimeUnit.SECONDS);
+        long sweepMillis = Math.max(presence.getTtlMillis() / 4, 1000);
+        maintenanceExecutor.scheduleWithFixedDelay(() -> {
+            int expired = presence.expire(System.currentTimeMillis(), clients::remove);
+            if (expired > 0) {
+                System.out.println("Expired " + expired + " sessions without a heartbeat");
+            }
+            sessions.expire(System.currentTimeMillis());
+        }, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        maintenanceExecutor.scheduleWithFixedDelay(() -> {
+            int compacted = posts.compactPartitionsBefore(Instant.now().minus(coldPartitionAgeMinutes, ChronoUnit.MINUTES));
+            if (compacted > 0) {
+                System.out.println("Compacted " + compacted + " cold post partitions");
+            }
+        }, 1, 10, TimeUnit.MINUTES);
+    }
+
+    public void shutdown() throws IOException {
+        if (wal != null) {
+            checkpoint();
+            wal.close();
+        }
+    }
+
+    private DatabaseSnapshot captureSnapshot(long walSegment, String postSegmentFile) {
+        DatabaseSnapshot snapshot = new DatabaseSnapshot(walSegment, lastContentId.get(), postSegmentFile);
+        for (Account account : accounts.values()) {
+            snapshot.accounts.put(account.getUsername(), account.getPassword());
+        }
+        snapshot.stories.addAll(stories.live(Instant.now()));
+        snapshot.followers.putAll(followers.toMap());
+        snapshot.chatroomNames.addAll(chatrooms.names());
+        snapshot.chatroomMembers.putAll(chatrooms.memberships());
+        return snapshot;
+    }
+
+    private void recover() throws IOException {
+        long firstSegment = 0;
+        Path snapshotFile = dataDirectory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotFile)) {
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                DatabaseSnapshot snapshot = (DatabaseSnapshot) in.readObject();
+                restoreSnapshot(snapshot);
+                try (PostSegment segment = PostSegment.open(dataDirectory.resolve(snapshot.postSegmentFile))) {
+                    segment.forEach(posts::add);
+                }
+                firstSegment = snapshot.walSegment;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unreadable snapshot " + snapshotFile, e);
+            }
+            System.out.println("Loaded snapshot with " + posts.size() + " posts and " + accounts.size() + " accounts");
+        }
+        WriteAheadLog.replay(dataDirectory, firstSegment, this::applyRecord);
+    }
+
+    private void restoreSnapshot(DatabaseSnapshot snapshot) {
+        lastContentId.set(snapshot.lastContentId);
+        for (Map.Entry<String, String> entry : snapshot.accounts.entrySet()) {
+            accounts.put(entry.getKey(), new Account(entry.getKey(), entry.getValue()));
+        }
+        for (Story story : snapshot.stories) {
+            stories.add(story);
+        }
+        followers.replaceAll(snapshot.followers);
+        for (String roomName : snapshot.chatroomNames) {
+            chatrooms.create(roomName);
+        }
+        if (snapshot.chatroomMembers != null) { // Absent in snapshots written before membership was kept
+            for (Map.Entry<String, Set<String>> entry : snapshot.chatroomMembers.entrySet()) {
+                for (String username : entry.getValue()) {
+                    chatrooms.join(entry.getKey(), username);
+                }
+            }
+        }
     }
 
     // Main method to run the DatabaseServer
     public static void main(String[] args) {
         try {
-            DatabaseServerImpl databaseServer = new DatabaseServerImpl();
+            // Persistence settings, fsync happens in batches off the request path
+            Path dataDirectory = Paths.get(System.getProperty("db.dataDir", "data"));
+            long fsyncIntervalMillis = Long.getLong("db.fsyncIntervalMs", 50);
+            int fsyncBatchSize = Integer.getInteger("db.fsyncBatch", 512);
+            long snapshotIntervalSeconds = Long.getLong("db.snapshotIntervalSec", 300);
+            long coldPartitionAgeMinutes = Long.getLong("search.coldAfterMin", 24 * 60);
+
+            DatabaseServerImpl databaseServer = new DatabaseServerImpl(dataDirectory, fsyncIntervalMillis, fsyncBatchSize);
+            databaseServer.startMaintenance(snapshotIntervalSeconds, coldPartitionAgeMinutes);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    databaseServer.shutdown();
+                } catch (IOException e) {
+                    System.err.println("Failed to flush database on shutdown: " + e.getMessage());
+                }
+            }));
+
             Registry registry = LocateRegistry.createRegistry(1098); // Use a different port for the database server
             registry.rebind("DatabaseServer", databaseServer);
-            databaseServer.registerUser("admin", databaseServer.hashPassword("admin")); // Default account
-            databaseServer.registerUser("yuchen", databaseServer.hashPassword("123")); // Default account
-            databaseServer.registerUser("jason", databaseServer.hashPassword("123")); // Default account
-            databaseServer.registerUser("brandon", databaseServer.hashPassword("123")); // Default account
-            databaseServer.registerUser("kunyan", databaseServer.hashPassword("123")); // Default account
-            databaseServer.registerUser("mingwey", databaseServer.hashPassword("123")); // Default account
+            if (databaseServer.accounts.isEmpty()) { // First start, nothing recovered from disk
+                PasswordHasher hasher = PasswordHasher.shared();
+                databaseServer.registerUser("admin", hasher.hashNow("admin")); // Default account
+                databaseServer.registerUser("yuchen", hasher.hashNow("123")); // Default account
+                databaseServer.registerUser("jason", hasher.hashNow("123")); // Default account
+                databaseServer.registerUser("brandon", hasher.hashNow("123")); // Default account
+                databaseServer.registerUser("kunyan", hasher.hashNow("123")); // Default account
+                databaseServer.registerUser("mingwey", hasher.hashNow("123")); // Default account
+            }
             System.out.println("Database server is running...");
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,24 @@
+import java.io.Serializable;
+import java.util.*;
+
+// Point-in-time image of the durable database state. Online users and clients are remote stubs that do
+// not survive a restart, so they are not kept; chatroom members are kept by username. Posts are not part
+// of this object; they are written next to it as a PostSegment file.
+public class DatabaseSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final long walSegment; // First WAL segment that is not covered by this snapshot
+    final int lastContentId;
+    final String postSegmentFile; // File name of the post segment taken with this snapshot
+    final Map<String, String> accounts = new HashMap<>(); // username -> hashed password
+    final List<Story> stories = new ArrayList<>();
+    final Map<String, Set<String>> followers = new HashMap<>();
+    final List<String> chatroomNames = new ArrayList<>();
+    final Map<String, Set<String>> chatroomMembers = new HashMap<>(); // room -> usernames
+
+    DatabaseSnapshot(long walSegment, int lastContentId, String postSegmentFile) {
+        this.walSegment = walSegment;
+        this.lastContentId = lastContentId;
+        this.postSegmentFile = postSegmentFile;
+    }
+}
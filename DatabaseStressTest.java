@@ -0,0 +1,107 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stress check for the database's per-family concurrency: measures password checks (verifyPassword, what
+// login and loginUser use) on their own, then again while other threads copy the whole post list as fast as
+// they can. With no global lock the second number should stay close to the first. The hash cost defaults
+// far below the production 120000 iterations so the run measures the database rather than PBKDF2.
+// Usage: java DatabaseStressTest [loginThreads] [feedThreads] [posts] [seconds] [hashIterations]
+public class DatabaseStressTest {
+    public static void main(String[] args) throws Exception {
+        int loginThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int feedThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int postCount = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        System.setProperty("auth.iterations", args.length > 4 ? args[4] : "1000"); // Read once, by the shared hasher
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The database logs every call, keep that out of the timing
+
+        DatabaseServerImpl database = new DatabaseServerImpl(); // In memory, no WAL
+        int users = 1000;
+        for (int i = 0; i < users; i++) {
+            database.registerUser("user" + i, PasswordHasher.shared().hashNow("password" + i));
+        }
+        for (int i = 0; i < postCount; i++) {
+            database.appendPost("user" + (i % users), "Post number " + i);
+        }
+
+        double alone = measureLogins(database, loginThreads, 0, users, seconds, console);
+        double underLoad = measureLogins(database, loginThreads, feedThreads, users, seconds, console);
+        console.printf("Logins/s alone: %.0f%n", alone);
+        console.printf("Logins/s with %d threads copying %d posts: %.0f (%.0f%%)%n",
+                feedThreads, postCount, underLoad, underLoad * 100 / alone);
+        System.exit(0); // The database is an exported RMI object and would keep the JVM alive
+    }
+
+    private static double measureLogins(DatabaseServerImpl database, int loginThreads, int feedThreads, int users,
+                                        int seconds, PrintStream console) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder logins = new LongAdder();
+        LongAdder feeds = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < loginThreads; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                await(start);
+                int i = offset;
+                while (running.get()) {
+                    int user = i++ % users;
+                    try {
+                        if (!database.verifyPassword("user" + user, "password" + user)) {
+                            throw new IllegalStateException("Login failed for user" + user);
+                        }
+                    } catch (RemoteException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    logins.increment();
+                }
+            }));
+        }
+        for (int t = 0; t < feedThreads; t++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (running.get()) {
+                    try {
+                        database.getPosts();
+                    } catch (RemoteException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    feeds.increment();
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - began) / 1e9;
+        if (feedThreads > 0) {
+            console.printf("Post list copies/s: %.1f%n", feeds.sum() / elapsed);
+        }
+        return logins.sum() / elapsed;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
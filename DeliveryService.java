@@ -0,0 +1,259 @@
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Asynchronous push to clients. Senders only enqueue into the recipient's bounded mailbox and return;
+// one drain task per non-empty mailbox delivers in order on a fixed pool of delivery threads, so a slow or
+// dead client only ties up one of them. The drain task is started a flush interval after the first event by
+// a timer, not by sleeping on a pool thread, so events arriving together go out together; it then hands
+// the client up to batchSize events per receiveBatch call.
+// Failed callbacks are retried a few times; a client that is gone has its mailbox dropped.
+public class DeliveryService {
+    private final int mailboxCapacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final Map<MessagingClient, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Set<MessagingClient> legacyClients = ConcurrentHashMap.newKeySet(); // No receiveBatch, one callback per event
+    private final ExecutorService executor; // Bounded, a broadcast to many users must not start a thread each
+    private final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "delivery-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder(); // Events, not callbacks
+    private final LongAdder callbacks = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public DeliveryService(int threads, int mailboxCapacity, int batchSize, long flushIntervalMillis, int maxAttempts, long retryBackoffMillis) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "delivery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mailboxCapacity = mailboxCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public static DeliveryService fromSystemProperties() {
+        return new DeliveryService(
+                Integer.getInteger("delivery.threads", 16),
+                Integer.getInteger("delivery.mailboxSize", 256),
+                Integer.getInteger("delivery.batchSize", 64),
+                Long.getLong("delivery.flushIntervalMs", 20),
+                Integer.getInteger("delivery.maxAttempts", 3),
+                Long.getLong("delivery.retryBackoffMs", 100));
+    }
+
+    // Queue an event for the recipient; never blocks on the client
+    public void send(MessagingClient recipient, Event event) {
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(recipient, Mailbox::new);
+            synchronized (mailbox) {
+                if (mailbox.closed) {
+                    continue; // Removed by its drainer just now, take the fresh one
+                }
+                if (mailbox.items.size() >= mailboxCapacity) {
+                    mailbox.items.pollFirst(); // Full: the oldest event makes room for the newest
+                    pending.decrementAndGet();
+                    dropped.increment();
+                }
+                mailbox.items.addLast(event);
+                pending.incrementAndGet();
+                if (!mailbox.draining) {
+                    mailbox.draining = true;
+                    scheduleDrain(mailbox);
+                }
+                return;
+            }
+        }
+    }
+
+    // Forget a client that has disconnected
+    public void forget(MessagingClient client) {
+        legacyClients.remove(client);
+    }
+
+    public int getQueueDepth() {
+        return pending.get();
+    }
+
+    public void shutdown() {
+        flushTimer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    // Let events that arrive close together share a callback; the wait costs no delivery thread
+    private void scheduleDrain(Mailbox mailbox) {
+        try {
+            if (flushIntervalMillis > 0) {
+                flushTimer.schedule(() -> startDrain(mailbox), flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } else {
+                startDrain(mailbox);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nothing is delivered any more
+        }
+    }
+
+    private void startDrain(Mailbox mailbox) {
+        try {
+            executor.execute(() -> drain(mailbox));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void drain(Mailbox mailbox) {
+        while (true) {
+            List<Event> batch = new ArrayList<>(Math.min(batchSize, 64));
+            synchronized (mailbox) {
+                if (mailbox.items.isEmpty()) {
+                    mailbox.draining = false;
+                    mailbox.closed = true;
+                    mailboxes.remove(mailbox.recipient, mailbox);
+                    return;
+                }
+                while (batch.size() < batchSize && !mailbox.items.isEmpty()) {
+                    batch.add(mailbox.items.pollFirst());
+                }
+            }
+            pending.addAndGet(-batch.size());
+            if (!deliver(mailbox.recipient, batch)) {
+                discard(mailbox);
+                return;
+            }
+        }
+    }
+
+    // Deliver a batch in order; false if the client is gone
+    private boolean deliver(MessagingClient recipient, List<Event> batch) {
+        if (!legacyClients.contains(recipient)) {
+            try {
+                if (call(() -> recipient.receiveBatch(batch))) {
+                    delivered.add(batch.size());
+                    return true;
+                }
+                dropped.add(batch.size());
+                return false;
+            } catch (ServerException e) {
+                legacyClients.add(recipient); // Client predates receiveBatch, fall back to one callback per event
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Event event = batch.get(i);
+            boolean sent;
+            try {
+                sent = call(() -> {
+                    if (event.getType().isMessage()) {
+                        recipient.receiveMessage(event.getText());
+                    } else {
+                        recipient.notify(event.getText());
+                    }
+                });
+            } catch (ServerException e) {
+                sent = false;
+            }
+            if (!sent) {
+                dropped.add(batch.size() - i);
+                return false;
+            }
+            delivered.increment();
+        }
+        return true;
+    }
+
+    private interface Callback {
+        void run() throws RemoteException;
+    }
+
+    // One callback with retries; false if the client is gone or kept failing. Throws only if the client
+    // does not have the method at all.
+    private boolean call(Callback callback) throws ServerException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                callback.run();
+                callbacks.increment();
+                return true;
+            } catch (ConnectException | NoSuchObjectException e) {
+                return false; // The client has gone away, retrying will not help
+            } catch (RemoteException e) {
+                if (isMissingMethod(e)) {
+                    throw (ServerException) e; // Retrying will not help
+                }
+                if (attempt >= maxAttempts) {
+                    System.err.println("Giving up delivery after " + attempt + " attempts: " + e.getMessage());
+                    return false;
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(retryBackoffMillis * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    // RMI reports a method the remote object lacks as a server-side UnmarshalException. An UnmarshalException
+    // on our side (a reply cut off mid-read, say) is a broken connection, not an old client.
+    private static boolean isMissingMethod(RemoteException e) {
+        return e instanceof ServerException && e.getCause() instanceof UnmarshalException
+                && String.valueOf(e.getCause().getMessage()).startsWith("unrecognized method hash");
+    }
+
+    // Drop everything still queued for a client that could not be reached
+    private void discard(Mailbox mailbox) {
+        legacyClients.remove(mailbox.recipient);
+        synchronized (mailbox) {
+            int remaining = mailbox.items.size();
+            mailbox.items.clear();
+            pending.addAndGet(-remaining);
+            dropped.add(remaining);
+            mailbox.draining = false;
+            mailbox.closed = true;
+            mailboxes.remove(mailbox.recipient, mailbox);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryService{pending=" + pending.get() + ", delivered=" + delivered.sum() + ", callbacks=" + callbacks.sum()
+                + ", retries=" + retries.sum() + ", dropped=" + dropped.sum() + ", mailboxes=" + mailboxes.size() + "}";
+    }
+
+    private static class Mailbox {
+        final MessagingClient recipient;
+        final ArrayDeque<Event> items = new ArrayDeque<>();
+        boolean draining; // A drain task is queued or running
+        boolean closed;   // Removed from the map, enqueue must use a new mailbox
+
+        Mailbox(MessagingClient recipient) {
+            this.recipient = recipient;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.rmi.NoSuchObjectException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Messaging servers as RMI objects inside this JVM, each with its own registry on its port, so clients
+// connect exactly as they do to a separate process. Starting one takes milliseconds and reuses the
+// already-warm JIT; stopping one unexports its objects, with no OS-specific process killing.
+public class EmbeddedServerLauncher implements ServerLauncher {
+    private final Map<Integer, EmbeddedServer> servers = new ConcurrentHashMap<>();
+
+    @Override
+    public void launch(int port) throws Exception {
+        Registry registry = LocateRegistry.createRegistry(port);
+        try {
+            MessagingServerImpl server = new MessagingServerImpl(port);
+            registry.rebind("MessagingService", server.exportMonitored());
+            servers.put(port, new EmbeddedServer(registry, server));
+            System.out.println("Started embedded server on port " + port);
+        } catch (Exception e) {
+            UnicastRemoteObject.unexportObject(registry, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop(int port) {
+        EmbeddedServer embedded = servers.remove(port);
+        if (embedded == null) {
+            return;
+        }
+        embedded.server.shutdown();
+        try {
+            UnicastRemoteObject.unexportObject(embedded.registry, true);
+        } catch (NoSuchObjectException e) {
+            // Already unexported
+        }
+        System.out.println("Stopped embedded server on port " + port);
+    }
+
+    @Override
+    public void stopAll() {
+        for (int port : new ArrayList<>(servers.keySet())) {
+            stop(port);
+        }
+    }
+
+    private static class EmbeddedServer {
+        final Registry registry;
+        final MessagingServerImpl server;
+
+        EmbeddedServer(Registry registry, MessagingServerImpl server) {
+            this.registry = registry;
+            this.server = server;
+        }
+    }
+}
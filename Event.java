@@ -0,0 +1,68 @@
+import java.io.Serializable;
+import java.time.Instant;
+
+// One thing pushed to a client, delivered in batches through MessagingClient.receiveBatch
+public class Event implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        BROADCAST, // Message to every online user
+        DM,        // Message to one client
+        CHAT,      // Message in a chatroom
+        LIKE, COMMENT, FOLLOW, SHARE;
+
+        // Shown as a message rather than a notification
+        public boolean isMessage() {
+            return this == BROADCAST || this == DM || this == CHAT;
+        }
+    }
+
+    private final Type type;
+    private final String sender; // Username, null for system messages
+    private final String room;   // Chatroom name for CHAT, otherwise null
+    private final long sequence; // Position in the room for CHAT, otherwise 0
+    private final String text;
+    private final Instant timestamp;
+
+    public Event(Type type, String sender, String room, String text) {
+        this(type, sender, room, 0, text);
+    }
+
+    public Event(Type type, String sender, String room, long sequence, String text) {
+        this.type = type;
+        this.sender = sender;
+        this.room = room;
+        this.sequence = sequence;
+        this.text = text;
+        this.timestamp = Instant.now();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "Event{type=" + type + ", sender='" + sender + "', room='" + room + "', sequence=" + sequence + ", text='" + text + "', timestamp=" + timestamp + "}";
+    }
+}
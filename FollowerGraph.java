@@ -0,0 +1,286 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The follow graph in both directions. Usernames are interned to dense int ids and every user keeps two
+// sorted int arrays, the ids of their followers and of the users they follow, so membership is a binary
+// search and mutual-follow queries are merges of two sorted arrays, with no boxing.
+// Each user's arrays are guarded by that user's own lock; an edge change locks its two endpoints in turn.
+public class FollowerGraph {
+    private volatile Index index = new Index(); // Replaced as a whole by clear()
+    private final Object internLock = new Object();
+
+    // Register a user; false if they were already known
+    public boolean addUser(String username) {
+        Node node = intern(index, username);
+        synchronized (node) {
+            if (node.registered) {
+                return false;
+            }
+            node.registered = true;
+            return true;
+        }
+    }
+
+    public boolean contains(String username) {
+        Node node = find(index, username);
+        return node != null && node.registered;
+    }
+
+    // Add an edge; false if it already existed
+    public boolean follow(String follower, String followee) {
+        Index current = index; // Both ends from the same generation, even if clear() runs meanwhile
+        Node from = intern(current, follower);
+        Node to = intern(current, followee);
+        boolean added;
+        synchronized (to) {
+            added = to.followers.add(from.id);
+        }
+        synchronized (from) {
+            from.following.add(to.id);
+        }
+        return added;
+    }
+
+    // Remove an edge; false if it did not exist
+    public boolean unfollow(String follower, String followee) {
+        Index current = index;
+        Node from = find(current, follower);
+        Node to = find(current, followee);
+        if (from == null || to == null) {
+            return false;
+        }
+        boolean removed;
+        synchronized (to) {
+            removed = to.followers.remove(from.id);
+        }
+        synchronized (from) {
+            from.following.remove(to.id);
+        }
+        return removed;
+    }
+
+    public boolean follows(String follower, String followee) {
+        Index current = index;
+        Node from = find(current, follower);
+        Node to = find(current, followee);
+        if (from == null || to == null) {
+            return false;
+        }
+        synchronized (to) {
+            return to.followers.contains(from.id);
+        }
+    }
+
+    public int followerCount(String username) {
+        Node node = find(index, username);
+        if (node == null) {
+            return 0;
+        }
+        synchronized (node) {
+            return node.followers.size;
+        }
+    }
+
+    public List<String> followers(String username) {
+        return followers(index, username);
+    }
+
+    public List<String> following(String username) {
+        Index current = index;
+        Node node = find(current, username);
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        int[] followingIds;
+        synchronized (node) {
+            followingIds = node.following.toArray();
+        }
+        return names(current, followingIds, followingIds.length);
+    }
+
+    // Users who follow this user and are followed back
+    public List<String> mutuals(String username) {
+        Index current = index;
+        Node node = find(current, username);
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        int[] followerIds;
+        int[] followingIds;
+        synchronized (node) {
+            followerIds = node.followers.toArray();
+            followingIds = node.following.toArray();
+        }
+        int[] common = new int[Math.min(followerIds.length, followingIds.length)];
+        return names(current, common, intersect(followerIds, followingIds, common));
+    }
+
+    // followee -> follower names for every registered user, the shape the database API exposes
+    public Map<String, Set<String>> toMap() {
+        Index current;
+        Node[] snapshot;
+        int count;
+        synchronized (internLock) { // The array and the count must come from the same moment
+            current = index;
+            snapshot = current.nodes;
+            count = current.count;
+        }
+        Map<String, Set<String>> map = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            Node node = snapshot[id];
+            if (node.registered) {
+                map.put(node.username, new HashSet<>(followers(current, node.username)));
+            }
+        }
+        return map;
+    }
+
+    public void replaceAll(Map<String, Set<String>> followers) {
+        clear();
+        for (Map.Entry<String, Set<String>> entry : followers.entrySet()) {
+            addUser(entry.getKey());
+            for (String follower : entry.getValue()) {
+                follow(follower, entry.getKey());
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (internLock) {
+            index = new Index();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private List<String> followers(Index current, String username) {
+        Node node = find(current, username);
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        int[] followerIds;
+        synchronized (node) {
+            followerIds = node.followers.toArray();
+        }
+        return names(current, followerIds, followerIds.length);
+    }
+
+    // Merge two sorted arrays; writes the common ids into out and returns how many there are
+    private static int intersect(int[] a, int[] b, int[] out) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Ids are only meaningful in the index they came from, so lookups always name it
+    private List<String> names(Index current, int[] userIds, int length) {
+        Node[] snapshot = current.nodes;
+        List<String> names = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            names.add(snapshot[userIds[i]].username);
+        }
+        return names;
+    }
+
+    private static Node find(Index current, String username) {
+        Integer id = current.ids.get(username);
+        return id == null ? null : current.nodes[id];
+    }
+
+    private Node intern(Index current, String username) {
+        Node node = find(current, username);
+        if (node != null) {
+            return node;
+        }
+        synchronized (internLock) {
+            Integer id = current.ids.get(username);
+            if (id != null) {
+                return current.nodes[id];
+            }
+            Node[] array = current.nodes;
+            if (current.count == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+            }
+            node = new Node(current.count, username);
+            array[current.count++] = node;
+            current.nodes = array; // Publish the array before the id so readers never see an id past its end
+            current.ids.put(username, node.id);
+            return node;
+        }
+    }
+
+    // Name -> id map and the nodes those ids index; clear() swaps in a fresh one, so an id is never paired
+    // with another generation's array
+    private static class Index {
+        final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        volatile Node[] nodes = new Node[1024]; // Indexed by id, grown under the intern lock
+        int count; // Guarded by the intern lock
+    }
+
+    private static class Node {
+        final int id;
+        final String username;
+        final IntSet followers = new IntSet();
+        final IntSet following = new IntSet();
+        boolean registered; // Known user, not only the far end of an edge
+
+        Node(int id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+    }
+
+    // Growable sorted array of distinct ids
+    private static class IntSet {
+        int[] values = new int[4];
+        int size;
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        boolean add(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return true;
+        }
+
+        boolean remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// One persistent socket carrying length-prefixed frames in both directions: [length][type][request id][payload].
+// Requests and responses carry the caller's request id, so many calls can be in flight on the connection at
+// once and answered in any order; push frames carry server-to-client callbacks on the same socket.
+// Payloads name the method by its index in a table both sides build from the interface, followed by the
+// serialized arguments or result (posts, stories and pages use their compact WireFormat forms). Payloads are
+// only deserialized through an allow-list of the types the two interfaces actually exchange.
+public class FramedConnection implements Closeable {
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte ERROR = 3;
+    static final byte PUSH = 4;
+
+    private static final int MAX_FRAME_BYTES = Integer.getInteger("transport.maxFrameBytes", 16 * 1024 * 1024);
+
+    // Call arguments, results, pushed events and the exceptions a call can end with; anything else is rejected
+    // before it is instantiated
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;maxrefs=1000000;maxarray=1000000;"
+                    + "java.lang.Object;java.lang.String;java.lang.Number;java.lang.Integer;java.lang.Long;java.lang.Boolean;java.lang.Enum;"
+                    + "java.lang.Throwable;java.lang.Exception;java.lang.RuntimeException;java.lang.IllegalArgumentException;"
+                    + "java.lang.IllegalStateException;java.lang.NullPointerException;java.lang.UnsupportedOperationException;"
+                    + "java.lang.StackTraceElement;java.io.IOException;java.io.ObjectStreamException;java.io.InvalidClassException;java.rmi.*;java.security.GeneralSecurityException;"
+                    + "java.security.NoSuchAlgorithmException;java.time.Ser;java.time.Instant;"
+                    + "java.util.ArrayList;java.util.HashMap;java.util.Map$Entry;java.util.HashSet;java.util.LinkedHashMap;java.util.LinkedHashSet;"
+                    + "java.util.Collections$*;java.util.ImmutableCollections$*;java.util.CollSer;java.util.Arrays$ArrayList;"
+                    + "FramedConnection$CallbackMarker;WireFormat$*;Post;Story;PostPage;Event;Event$Type;!*");
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public FramedConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    // Writers from many threads never interleave; each frame goes out whole
+    public void write(byte type, int requestId, byte[] payload) throws IOException {
+        synchronized (out) {
+            out.writeInt(payload.length + 5);
+            out.writeByte(type);
+            out.writeInt(requestId);
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    // Only ever called from the connection's single reader thread
+    public Frame read() throws IOException {
+        int length = in.readInt();
+        if (length < 5 || length > MAX_FRAME_BYTES) {
+            throw new StreamCorruptedException("Bad frame length " + length);
+        }
+        byte type = in.readByte();
+        int requestId = in.readInt();
+        byte[] payload = new byte[length - 5];
+        in.readFully(payload);
+        return new Frame(type, requestId, payload);
+    }
+
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+
+    public static class Frame {
+        final byte type;
+        final int requestId;
+        final byte[] payload;
+
+        Frame(byte type, int requestId, byte[] payload) {
+            this.type = type;
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+
+    // The interface's methods in an order both ends agree on, so a call is sent as a short index
+    static Method[] methodTable(Class<?> type) {
+        Method[] methods = type.getMethods();
+        Arrays.sort(methods, Comparator.comparing(FramedConnection::signature));
+        return methods;
+    }
+
+    private static String signature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+
+    // A call: method index then arguments; a callback object among the arguments is replaced by a marker
+    static byte[] encodeCall(int methodIndex, Object[] args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new CallbackReplacingStream(bytes)) {
+            out.writeShort(methodIndex);
+            out.writeObject(args);
+        }
+        return bytes.toByteArray();
+    }
+
+    // The arguments are written after the index; self replaces the caller's callback marker, which is only
+    // ever a direct argument
+    static Object[] decodeCall(byte[] payload, MessagingClient self, int[] methodIndex) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            in.setObjectInputFilter(FILTER);
+            methodIndex[0] = in.readShort();
+            Object[] args = (Object[]) in.readObject();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == CallbackMarker.SELF) {
+                    args[i] = self;
+                }
+            }
+            return args;
+        } catch (ClassNotFoundException e) {
+            throw new InvalidClassException(e.getMessage());
+        }
+    }
+
+    static byte[] encodeValue(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object decodeValue(byte[] payload) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            in.setObjectInputFilter(FILTER);
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidClassException(e.getMessage());
+        }
+    }
+
+    // Stands in for the caller's own MessagingClient, which the other end replaces with its push bridge
+    enum CallbackMarker {
+        SELF
+    }
+
+    private static class CallbackReplacingStream extends ObjectOutputStream {
+        CallbackReplacingStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object object) {
+            return object instanceof MessagingClient ? CallbackMarker.SELF : object;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Pings every watched server concurrently once per interval, each ping on its own (virtual) thread with a
+// timeout, so one hung server never delays the others. A server is declared down after a number of
+// consecutive misses, which keeps detection latency at about interval * misses whatever the pool size.
+public class HeartbeatMonitor {
+    public interface Pinger {
+        void ping(int port) throws Exception;
+    }
+
+    private final Pinger pinger;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final int missThreshold;
+    private final long startupGraceMillis; // Misses before the first answer are ignored this long after watch()
+    private final IntConsumer onDown;
+
+    private final Map<Integer, ServerState> servers = new ConcurrentHashMap<>();
+    private final ExecutorService pingExecutor = VirtualThreads.newExecutor("heartbeat");
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "heartbeat-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HeartbeatMonitor(Pinger pinger, long intervalMillis, long timeoutMillis, int missThreshold,
+                            long startupGraceMillis, IntConsumer onDown) {
+        this.pinger = pinger;
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.missThreshold = missThreshold;
+        this.startupGraceMillis = startupGraceMillis;
+        this.onDown = onDown;
+    }
+
+    public void start() {
+        ticker.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void watch(int port) {
+        servers.putIfAbsent(port, new ServerState());
+    }
+
+    public void unwatch(int port) {
+        servers.remove(port);
+    }
+
+    private void tick() {
+        for (Map.Entry<Integer, ServerState> entry : servers.entrySet()) {
+            int port = entry.getKey();
+            ServerState state = entry.getValue();
+            if (!state.pinging.compareAndSet(false, true)) {
+                continue; // Previous ping has not answered or timed out yet; its own outcome is the miss, if any
+            }
+            CompletableFuture.runAsync(() -> {
+                try {
+                    pinger.ping(port);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, pingExecutor).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((ignored, error) -> {
+                state.pinging.set(false); // Runs once per ping, on the answer or the timeout, whichever comes first
+                if (error == null) {
+                    state.answered = true;
+                    state.misses.set(0);
+                } else {
+                    recordMiss(port, state);
+                }
+            });
+        }
+    }
+
+    private void recordMiss(int port, ServerState state) {
+        if (!state.answered && System.currentTimeMillis() - state.watchedSince < startupGraceMillis) {
+            return; // Still starting up
+        }
+        if (state.misses.incrementAndGet() == missThreshold && servers.remove(port, state)) {
+            pingExecutor.execute(() -> onDown.accept(port)); // Failover makes remote calls, keep it off the ticker
+        }
+    }
+
+    private static class ServerState {
+        final long watchedSince = System.currentTimeMillis();
+        final AtomicBoolean pinging = new AtomicBoolean();
+        final AtomicInteger misses = new AtomicInteger();
+        volatile boolean answered;
+    }
+}
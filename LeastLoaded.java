@@ -0,0 +1,18 @@
+import java.util.function.IntUnaryOperator;
+
+// The global minimum, as before. Exact, but a burst of logins all see the same minimum until loads are reported.
+public class LeastLoaded implements LoadBalancingStrategy {
+    @Override
+    public int choose(int[] ports, IntUnaryOperator load, String key) {
+        int best = 0;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int port : ports) {
+            int portLoad = load.applyAsInt(port);
+            if (portLoad < bestLoad) {
+                best = port;
+                bestLoad = portLoad;
+            }
+        }
+        return best;
+    }
+}
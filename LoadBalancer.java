@@ -2,6 +2,7 @@ import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 import java.util.Map;
 
 public interface LoadBalancer extends Remote {
@@ -11,9 +12,15 @@ public interface LoadBalancer extends Remote {
     // Update the load of an existing server
     void updateLoad (int load, int port) throws RemoteException;
 
-    // Get the least-loaded server
+    // Periodic load report from a server; its load score replaces the server's load
+    void reportMetrics(ServerMetrics metrics) throws RemoteException;
+
+    // Get the server for a new session, picked by the configured strategy (-Dlb.strategy)
     int getLeastLoadedServer() throws RemoteException;
 
+    // The server a user's session belongs on, or 0 if the strategy does not place users by name
+    int getServerForUser(String username) throws RemoteException;
+
     // Get all registered servers and their loads (optional for debugging)
     Map<Integer, Integer> getServerLoads() throws RemoteException;
 
@@ -23,4 +30,7 @@ public interface LoadBalancer extends Remote {
 
     void logMessage(String message) throws RemoteException;
 
+    // Several log lines in one call, in the order they were logged
+    void logMessages(List<String> messages) throws RemoteException;
+
 }
@@ -7,17 +7,31 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntUnaryOperator;
 
 public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalancer {
-    private final ConcurrentHashMap<Integer, Integer> serverLoadMap = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Integer, Long> idleServerTimestamps = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Integer> serverLoadMap = new ConcurrentHashMap<>(); // port -> load score
+    private final ConcurrentHashMap<Integer, ServerMetrics> serverMetrics = new ConcurrentHashMap<>(); // latest report per port
     private final ConcurrentHashMap<MessagingClient, Integer> clientMap = new ConcurrentHashMap<>();
-    private static final int SCALE_DOWN_DELAY = 10000;
 
-    private final ReentrantLock serverLoadMapLock = new ReentrantLock();
-    private final ReentrantLock clientMapLock = new ReentrantLock();
+    private final StubCache stubs = new StubCache(); // Messaging server stubs, looked up once per port
+    private final LoadBalancingStrategy strategy = LoadBalancingStrategy.named(System.getProperty("lb.strategy", "p2c"));
+    private final IntUnaryOperator currentLoad = port -> serverLoadMap.getOrDefault(port, 0);
+    private volatile int[] ports = new int[0]; // Live servers, replaced wholesale whenever one joins or leaves
+    private final HeartbeatMonitor heartbeats = new HeartbeatMonitor(
+            port -> server(port).ping(),
+            Long.getLong("lb.heartbeatIntervalMs", 2000),
+            Long.getLong("lb.heartbeatTimeoutMs", 1000),
+            Integer.getInteger("lb.heartbeatMisses", 3),
+            Long.getLong("lb.heartbeatGraceMs", 15000),
+            this::serverDown);
+    private final Autoscaler autoscaler = Autoscaler.fromSystemProperties();
+    private final int standbyTarget = Integer.getInteger("lb.standbyServers", 1);
+    private final Set<Integer> standbyServers = ConcurrentHashMap.newKeySet(); // Launched and warm, but not routed to
+    private final ServerLauncher launcher = ServerLauncher.named(System.getProperty("lb.serverMode", "embedded"));
 
     // Constructor
     protected LoadBalancerImpl() throws RemoteException {
@@ -25,102 +39,130 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
     }
 
     public void monitorAndManage() {
-        new Thread(() -> {
-            while (true) {
-                try {
-                    // Sleep interval between monitoring cycles
-                    Thread.sleep(5000); // 5 seconds monitoring interval
-    
-                    // Attempt to acquire locks with timeout
-                    if (serverLoadMapLock.tryLock(1, TimeUnit.SECONDS) && 
-                        clientMapLock.tryLock(1, TimeUnit.SECONDS)) {
-                        try {
-                            // Print current server loads
-                            System.out.println("Server loads: " + serverLoadMap);
-    
-                            // Use an iterator to safely modify the map during iteration
-                            Iterator<Map.Entry<Integer, Integer>> iterator = serverLoadMap.entrySet().iterator();
-        
-                            while (iterator.hasNext()) {
-                                Map.Entry<Integer, Integer> entry = iterator.next();
-                                int port = entry.getKey();
-                                int load = entry.getValue();
-            
-                                // Heartbeat: Check if the server is alive
-                                if (!isServerAlive(port)) {
-                                    System.err.println("Server at port " + port + " is unresponsive. Removing it.");
-                                    iterator.remove();
-                                    reassignClients(port);
-                                    continue; // Skip further checks for this server
-                                }
-            
-                                // Scale-up: Check if the server is overloaded
-                                if (load > LOAD_THRESHOLD) {
-                                    System.out.println("Load on port " + port + " exceeds threshold. Scaling up...");
-                                    int newPort = spawnNewServer();
-                                    redistributeClients(port, newPort);
-                                    break; // Avoid excessive scaling
-                                }
-            
-                                // Scale-down: Check if the server is idle
-                                if (load == 0 && serverLoadMap.size() > 1) {
-                                    long currentTime = System.currentTimeMillis();
-                                    
-                                    // Track idle server timestamp
-                                    idleServerTimestamps.compute(port, (k, existingTimestamp) -> {
-                                        if (existingTimestamp == null) {
-                                            return currentTime;
-                                        }
-                                        
-                                        // Check if idle time exceeds threshold
-                                        if (currentTime - existingTimestamp >= SCALE_DOWN_DELAY) {
-                                            System.out.println("Server on port " + port + " has been idle for too long. Scaling down...");
-                                            killServer(port);
-                                            iterator.remove();
-                                            return null; // Remove timestamp
-                                        }
-                                        
-                                        return existingTimestamp;
-                                    });
-                                } else {
-                                    // Remove idle timestamp if server becomes active
-                                    idleServerTimestamps.remove(port);
-                                }
-                            }
-                        } finally {
-                            // Always release locks in the correct order
-                            clientMapLock.unlock();
-                            serverLoadMapLock.unlock();
-                        }
-                    } else {
-                        // Log lock acquisition failure
-                        System.err.println("Could not acquire locks for monitoring");
-                    }
-                } catch (InterruptedException e) {
-                    System.err.println("Monitor thread interrupted: " + e.getMessage());
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }).start();
+        // Liveness is checked concurrently by the heartbeat monitor; this loop only looks at loads
+        heartbeats.start();
+        ScheduledExecutorService capacityExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "lb-capacity");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Long.getLong("lb.capacityIntervalMs", 5000);
+        capacityExecutor.scheduleWithFixedDelay(this::manageCapacity, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
     }
-    
-    // Heartbeat logic for server check
-    private boolean isServerAlive(int port) {
+
+    // One autoscaling tick: feed the pool's total load to the autoscaler, act on its decision, then top up standbys.
+    // Reads the concurrent maps directly, without global locks.
+    private void manageCapacity() {
         try {
-            Registry registry = LocateRegistry.getRegistry(port);
-            MessagingServer server = (MessagingServer) registry.lookup("MessagingService");
-            server.ping(); // Assume `MessagingServer` has a `ping` method
-            return true;
-        } catch (Exception e) {
-            return false;
+            int activeServers = ports.length;
+            double totalLoad = 0;
+            for (int load : serverLoadMap.values()) {
+                totalLoad += load;
+            }
+            Autoscaler.Decision decision = autoscaler.observe(totalLoad, activeServers, System.currentTimeMillis());
+
+            // Print current server metrics
+            System.out.println("Server metrics: " + serverMetrics.values() + ", " + autoscaler
+                    + ", standby: " + standbyServers + ", decision: " + decision);
+
+            if (decision == Autoscaler.Decision.SCALE_UP) {
+                addCapacity();
+            } else if (decision == Autoscaler.Decision.SCALE_DOWN) {
+                removeCapacity();
+            }
+            replenishStandbys();
+        } catch (RuntimeException e) {
+            System.err.println("Capacity check failed: " + e.getMessage()); // Keep the schedule alive
         }
     }
-    
-    private void reassignClients(int failedPort) {
+
+    // Promote a warm standby if there is one, so the new capacity is usable at once; otherwise launch a server
+    private void addCapacity() {
+        Iterator<Integer> standby = standbyServers.iterator();
+        if (standby.hasNext()) {
+            int port = standby.next();
+            standbyServers.remove(port);
+            activateServer(port, 0);
+            System.out.println("Scaled up by promoting standby server on port " + port);
+            return;
+        }
+        int port = findAvailablePort();
+        launchServer(port);
+        activateServer(port, 0);
+        System.out.println("Scaled up by launching a server on port " + port);
+    }
+
+    // Take the least loaded server out of routing, move its clients, then keep it as a standby or stop it
+    private void removeCapacity() {
+        int[] current = ports;
+        int port = new LeastLoaded().choose(current, currentLoad, null);
+        if (port == 0) {
+            return;
+        }
+        deactivateServer(port);
+        reassignClients(port, true);
+        if (standbyServers.size() < standbyTarget) {
+            standbyServers.add(port);
+            System.out.println("Scaled down, server on port " + port + " is now a standby");
+        } else {
+            retireServer(port);
+            killServer(port);
+            System.out.println("Scaled down, stopped server on port " + port);
+        }
+    }
+
+    // Launch at most one standby per tick, so they are warm before they are needed
+    private void replenishStandbys() {
+        if (standbyServers.size() < standbyTarget) {
+            int port = findAvailablePort();
+            launchServer(port);
+            standbyServers.add(port);
+            heartbeats.watch(port);
+            System.out.println("Launched standby server on port " + port);
+        }
+    }
+
+    // Called by the heartbeat monitor once a server has missed enough heartbeats in a row
+    private void serverDown(int port) {
+        System.err.println("Server at port " + port + " is unresponsive. Removing it.");
+        boolean wasStandby = standbyServers.contains(port);
+        retireServer(port);
+        if (!wasStandby) {
+            reassignClients(port, false);
+        }
+    }
+
+    private void activateServer(int port, int load) {
+        serverLoadMap.put(port, load);
+        refreshPorts();
+        heartbeats.watch(port);
+    }
+
+    // Stop routing new sessions to the server; it stays watched
+    private void deactivateServer(int port) {
+        serverLoadMap.remove(port);
+        serverMetrics.remove(port);
+        refreshPorts();
+    }
+
+    // Forget the server entirely
+    private void retireServer(int port) {
+        deactivateServer(port);
+        standbyServers.remove(port);
+        heartbeats.unwatch(port);
+        stubs.invalidate("localhost", port);
+    }
+
+    // Reconnecting handle to the messaging server on a port
+    private MessagingServer server(int port) {
+        return stubs.proxy("localhost", port, "MessagingService", MessagingServer.class);
+    }
+
+    // Move every client of a server that failed or is being drained; a drained server is told to drop them too
+    private void reassignClients(int fromPort, boolean fromAlive) {
         List<MessagingClient> clientsToReassign = new ArrayList<>();
         for (Map.Entry<MessagingClient, Integer> entry : clientMap.entrySet()) {
-            if (entry.getValue() == failedPort) {
+            if (entry.getValue() == fromPort) {
                 clientsToReassign.add(entry.getKey());
             }
         }
@@ -128,13 +170,15 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
         for (MessagingClient client : clientsToReassign) {
             try {
                 int newPort = getLeastLoadedServer();
-                Registry registry = LocateRegistry.getRegistry(newPort);
-                MessagingServer newServer = (MessagingServer) registry.lookup("MessagingService");
+                MessagingServer newServer = server(newPort);
                 client.connectToServer(newPort);
 
                 // Update mappings
                 clientMap.put(client, newPort);
                 newServer.incrementLoad();
+                if (fromAlive) {
+                    server(fromPort).decrementLoad();
+                }
 
                 System.out.println("Reassigned client to new server on port: " + newPort);
             } catch (Exception e) {
@@ -144,79 +188,27 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
     }
 
     private void killServer(int port) {
-        try {
-            String command = String.format("java KillPortProcess %d", port);
-            Runtime.getRuntime().exec(command);
-            System.out.println("Executed scale-down command for server on port " + port);
-        } catch (IOException e) {
-            System.err.println("Failed to scale down server on port " + port + ": " + e.getMessage());
-        }
+        launcher.stop(port);
+        System.out.println("Executed scale-down for server on port " + port);
     }
 
     @Override   
     public void addClient(MessagingClient client, int port) {
-        clientMap.put(client, port);
-        checkLoad();
+        clientMap.put(client, port); // Scaling is left to the autoscaler's schedule, not done per login
     }
 
     @Override
-    public synchronized void removeClient(MessagingClient client) throws RemoteException {
+    public void removeClient(MessagingClient client) throws RemoteException {
         System.out.println("Removed Client: " + client);
-        if (clientMap.containsKey(client)) {
-            int port = clientMap.get(client);
-            clientMap.remove(client);
-
-            // Decrement the load for the respective port but limit it to 0
-            serverLoadMap.computeIfPresent(port, (k, v) -> Math.max(v - 1, 0));
-
-            System.out.println("Client removed. Updated load for port " + port + ": " + serverLoadMap.get(port));
+        Integer port = clientMap.remove(client);
+        if (port != null) {
+            // Load is left to the server's own metrics reports, adjusting it here as well made the two drift apart
+            System.out.println("Client removed from port " + port);
         } else {
             System.out.println("Client not found in load balancer.");
         }
     }
 
-    int LOAD_THRESHOLD = 1;
-    private synchronized void checkLoad() {
-        System.out.println("CHECKING LOAD");
-        for (Map.Entry<Integer, Integer> entry : serverLoadMap.entrySet()) {
-            int port = entry.getKey();
-            int load = entry.getValue();
-
-            if (load > LOAD_THRESHOLD) {
-                System.out.println("Load on port " + port + " exceeds threshold. Spawning new server...");
-                spawnNewServer();
-                break;
-            }
-        }
-    }
-
-    private int spawnNewServer() {
-        try {
-            // Find an available port
-            int newPort = findAvailablePort();
-
-            // get any server that is running, and sync the state to the new server
-            int oldPort = serverLoadMap.keySet().iterator().next();
-
-            // Spawn the new server (using an example command, adjust as needed)
-            registerServer("localhost:newserver", 0, newPort);
-
-            // Register the new server in the serverLoadMap with 0 clients initially
-            serverLoadMap.put(newPort, 0);
-
-            System.out.println("New server spawned on port " + newPort);
-
-            
-            MessagingServer server = (MessagingServer) LocateRegistry.getRegistry(oldPort).lookup("MessagingService");
-            System.out.println("Notified server at port " + oldPort + " to sync state to new server on port " + newPort);
-
-            return newPort;
-        } catch (IOException | NotBoundException e) {
-            System.err.println("Failed to spawn new server: " + e.getMessage());
-            throw new RuntimeException(e);
-        }
-    }
-
     private int findAvailablePort() {
         try (ServerSocket socket = new ServerSocket(0)) {
             return socket.getLocalPort(); // Dynamically find an available port
@@ -226,22 +218,23 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
     }
 
     @Override
-    public synchronized void registerServer(String address, int load, int port) throws IOException, NotBoundException {
-
-        String command = String.format("java MessagingServerImpl %d", port);
-        Runtime.getRuntime().exec(command);
-
-        System.out.println("SERVER CREATED USING COMMAND");
-
-
-        serverLoadMap.put(port, load);
+    public void registerServer(String address, int load, int port) throws IOException, NotBoundException {
+        launchServer(port);
+        activateServer(port, load);
         System.out.println("Registered server: " + address + " with load: " + load);
     }
 
+    private void launchServer(int port) {
+        try {
+            launcher.launch(port);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to launch server on port " + port + ": " + e.getMessage(), e);
+        }
+    }
+
     @Override
-    public synchronized void updateLoad(int load, int port) throws RemoteException {
-        if (serverLoadMap.containsKey(port)) {
-            serverLoadMap.put(port, load);
+    public void updateLoad(int load, int port) throws RemoteException {
+        if (serverLoadMap.replace(port, load) != null) {
             System.out.println("Updated server: " + port + " with load: " + load);
         } else {
             System.out.println("Server not registered: " + port);
@@ -249,55 +242,36 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
     }
 
     @Override
-    public synchronized int getLeastLoadedServer() throws RemoteException {
-        return serverLoadMap.entrySet()
-                .stream()
-                .min(Comparator.comparingInt(Map.Entry::getValue))
-                .map(Map.Entry::getKey)
-                .orElse(0);
+    public void reportMetrics(ServerMetrics metrics) throws RemoteException {
+        int port = metrics.getPort();
+        if (standbyServers.contains(port)) {
+            return; // Not routed to, so its load does not count
+        }
+        if (serverLoadMap.replace(port, metrics.loadScore()) != null) {
+            serverMetrics.put(port, metrics);
+        } else {
+            System.out.println("Metrics from unregistered server: " + port);
+        }
     }
 
+    // Kept under its old name for existing clients; the configured strategy decides, with no username to go on
     @Override
-    public synchronized Map<Integer, Integer> getServerLoads() throws RemoteException {
-        synchronized (serverLoadMap){
-            return new HashMap<>(serverLoadMap);
-        }
+    public int getLeastLoadedServer() throws RemoteException {
+        return strategy.choose(ports, currentLoad, null);
     }
 
-    private void redistributeClients(int overloadedPort, int newPort) {
-        System.out.println("Redistributing clients from port " + overloadedPort + " to port " + newPort);
-        List<MessagingClient> clientsToMove = new ArrayList<>();
-
-        // Find clients connected to the overloaded port
-        for (Map.Entry<MessagingClient, Integer> entry : clientMap.entrySet()) {
-            if (entry.getValue() == overloadedPort) {
-                clientsToMove.add(entry.getKey());
-                if (clientsToMove.size() >= LOAD_THRESHOLD / 2) {
-                    // Move half of the load to the new server
-                    break;
-                }
-            }
-        }
+    @Override
+    public int getServerForUser(String username) throws RemoteException {
+        return strategy.isKeyed() ? strategy.choose(ports, currentLoad, username) : 0;
+    }
 
-        for (MessagingClient client : clientsToMove) {
-            try {
-                // Reassign the client to the new server
-                Registry registry = LocateRegistry.getRegistry(newPort);
-                MessagingServer newServer = (MessagingServer) registry.lookup("MessagingService");
-                client.connectToServer(newPort);
+    private synchronized void refreshPorts() {
+        ports = serverLoadMap.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
 
-                // Update load maps
-                clientMap.put(client, newPort);
-                newServer.incrementLoad();
-                // get the old server
-                MessagingServer oldServer = (MessagingServer) LocateRegistry.getRegistry(overloadedPort).lookup("MessagingService");
-                oldServer.decrementLoad();
-                
-                System.out.println("Moved client to new server on port: " + newPort);
-            } catch (Exception e) {
-                System.err.println("Failed to move client to new server: " + e.getMessage());
-            }
-        }
+    @Override
+    public Map<Integer, Integer> getServerLoads() throws RemoteException {
+        return new HashMap<>(serverLoadMap);
     }
 
     @Override
@@ -305,8 +279,18 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
         System.out.println("[Server Log] " + message);
     }
 
+    @Override
+    public void logMessages(List<String> messages) throws RemoteException {
+        StringBuilder lines = new StringBuilder();
+        for (String message : messages) {
+            lines.append("[Server Log] ").append(message).append(System.lineSeparator());
+        }
+        System.out.print(lines); // One write, so batches from different servers do not interleave
+    }
+
     public static void main(String[] args) {
         try {
+            System.setProperty("java.rmi.server.hostname", "localhost"); // Embedded servers are exported from this JVM
             // Create and export the server coordinator
             LoadBalancerImpl coordinator = new LoadBalancerImpl();
 
@@ -314,7 +298,7 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
             Registry registry = LocateRegistry.createRegistry(1099);
             registry.rebind("ServerCoordinator", coordinator);
 
-            System.out.println("ServerCoordinator is running on port 1099...");
+            System.out.println("ServerCoordinator is running on port 1099 with strategy " + coordinator.strategy.getClass().getSimpleName() + "...");
 
             // Register servers
             coordinator.registerServer("localhost:1100", 0, 1100);
@@ -335,17 +319,7 @@ public class LoadBalancerImpl extends UnicastRemoteObject implements LoadBalance
             // Add a shutdown hook to clean up resources
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("Shutdown initiated. Cleaning up resources...");
-                synchronized (coordinator.serverLoadMap) {
-                    for (int port : coordinator.serverLoadMap.keySet()) {
-                        try {
-                            String command = String.format("java KillPortProcess %d", port);
-                            Runtime.getRuntime().exec(command);
-                            System.out.println("Killed server on port: " + port);
-                        } catch (IOException e) {
-                            System.err.println("Failed to kill server on port " + port + ": " + e.getMessage());
-                        }
-                    }
-                }
+                coordinator.launcher.stopAll(); // Active and standby servers alike
             }));
             // Print all server loads
             Map<Integer, Integer> serverLoads = coordinator.getServerLoads();
@@ -0,0 +1,30 @@
+import java.util.function.IntUnaryOperator;
+
+// Picks the messaging server for a new session. Implementations must be thread-safe and must not block:
+// they are called concurrently for every login, with the current live ports and a load lookup.
+public interface LoadBalancingStrategy {
+    // ports is never modified by the caller and may be empty, in which case 0 is returned.
+    // key is the username when it is known, otherwise null.
+    int choose(int[] ports, IntUnaryOperator load, String key);
+
+    // Whether choose() places the same key on the same server, so sessions can be homed by username
+    default boolean isKeyed() {
+        return false;
+    }
+
+    // Strategy by the name given in -Dlb.strategy
+    static LoadBalancingStrategy named(String name) {
+        switch (name) {
+            case "p2c":
+                return new PowerOfTwoChoices();
+            case "weighted-round-robin":
+                return new WeightedRoundRobin();
+            case "consistent-hash":
+                return new ConsistentHashing(Integer.getInteger("lb.virtualNodes", 128));
+            case "least-loaded":
+                return new LeastLoaded();
+            default:
+                throw new IllegalArgumentException("Unknown load balancing strategy: " + name);
+        }
+    }
+}
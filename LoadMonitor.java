@@ -1,24 +1,120 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+// Load counters for one messaging server. Remote calls are measured by wrapping the exported object with
+// instrument(); snapshot() turns the counters since the previous snapshot into a ServerMetrics report.
 public class LoadMonitor {
-    private int connectedClients = 0;
-    private long messagesSent = 0;
+    private static final int LATENCY_BUCKETS = 40; // Bucket i holds calls taking [2^(i-1), 2^i) microseconds
+
+    private final AtomicInteger connectedClients = new AtomicInteger();
+    private final LongAdder messagesSent = new LongAdder();
+    private final AtomicInteger inFlightCalls = new AtomicInteger();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS);
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile Supplier<AuthStats> authStats = () -> AuthStats.NONE;
+    private long lastSnapshotNanos = System.nanoTime(); // Only touched by snapshot()
+    private AuthStats lastAuthStats = AuthStats.NONE;   // Likewise
 
-    public synchronized void clientConnected() {
-        connectedClients++;
+    public void clientConnected() {
+        connectedClients.incrementAndGet();
     }
 
-    public synchronized void clientDisconnected() {
-        connectedClients--;
+    public void clientDisconnected() {
+        connectedClients.updateAndGet(count -> Math.max(count - 1, 0));
     }
 
-    public synchronized void messageSent() {
-        messagesSent++;
+    public void messageSent() {
+        messagesSent.increment();
     }
 
-    public synchronized int getClientCount() {
-        return connectedClients;
+    public int getClientCount() {
+        return connectedClients.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    // Where to read the pending work backlog from, e.g. outbound queues
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    // Where to read the password hashing counters from
+    public void setAuthStats(Supplier<AuthStats> authStats) {
+        this.authStats = authStats;
+    }
+
+    // A proxy of target that records in-flight count and latency for every call
+    public <T extends Remote> T instrument(T target, Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            inFlightCalls.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                recordLatency(System.nanoTime() - start);
+                inFlightCalls.decrementAndGet();
+            }
+        }));
+    }
+
+    private void recordLatency(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), LATENCY_BUCKETS - 1);
+        latencyBuckets.incrementAndGet(bucket);
+    }
+
+    // Counters since the previous snapshot; called from a single reporting thread
+    public synchronized ServerMetrics snapshot(int port) {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastSnapshotNanos) / 1e9, 1e-3);
+        lastSnapshotNanos = now;
+
+        long[] counts = new long[LATENCY_BUCKETS];
+        long calls = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            counts[i] = latencyBuckets.getAndSet(i, 0);
+            calls += counts[i];
+        }
+
+        AuthStats auth = authStats.get();
+        long hashes = auth.getHashes() - lastAuthStats.getHashes();
+        long hashNanos = auth.getHashNanos() - lastAuthStats.getHashNanos();
+        long rejected = auth.getRejected() - lastAuthStats.getRejected();
+        lastAuthStats = auth;
+        if (hashes < 0 || hashNanos < 0 || rejected < 0) {
+            hashes = hashNanos = rejected = 0; // Counters went backwards (the database restarted), start over
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        return new ServerMetrics(port, System.currentTimeMillis(), connectedClients.get(), inFlightCalls.get(),
+                calls / seconds, percentileMillis(counts, calls, 0.99),
+                runtime.totalMemory() - runtime.freeMemory(), runtime.maxMemory(), queueDepth.getAsInt(),
+                auth.getQueueDepth(), hashes == 0 ? 0 : hashNanos / 1e6 / hashes, rejected);
     }
 
-    public synchronized long getMessagesSent() {
-        return messagesSent;
+    // Upper bound of the bucket holding the percentile, so it is accurate to within a factor of two
+    private static double percentileMillis(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (counts.length - 1)) / 1000.0;
     }
 }
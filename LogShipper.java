@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ships log lines to the load balancer off the request path. Callers only enqueue into a bounded buffer;
+// a daemon thread drains it in batches. When the buffer is full new lines are dropped and counted,
+// and the count is reported with the next batch, so logging never blocks or grows without bound.
+public class LogShipper {
+    private final LoadBalancer target;
+    private final BlockingQueue<String> buffer;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final AtomicLong dropped = new AtomicLong();     // Lines rejected by a full buffer, not yet reported
+    private final Thread drainer;
+
+    public LogShipper(LoadBalancer target, int capacity, int batchSize, long flushIntervalMillis) {
+        this.target = target;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+
+        this.drainer = new Thread(this::drainLoop, "log-shipper");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // Never blocks; returns false if the line was dropped
+    public boolean log(String message) {
+        if (buffer.offer(message)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    // Lines waiting to be shipped
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    // Stop the drainer; lines still buffered are not shipped
+    public void close() {
+        drainer.interrupt();
+    }
+
+    private void drainLoop() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                String first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - 1);
+                }
+                long droppedSinceLastBatch = dropped.getAndSet(0);
+                if (droppedSinceLastBatch > 0) {
+                    batch.add("Log buffer full, dropped " + droppedSinceLastBatch + " lines");
+                }
+                if (!batch.isEmpty()) {
+                    send(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<String> batch) {
+        try {
+            target.logMessages(new ArrayList<>(batch));
+        } catch (Exception e) {
+            // Logged locally and dropped; retrying here would only back the buffer up further
+            System.err.println("Failed to ship " + batch.size() + " log lines to load balancer: " + e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface MessagingClient extends Remote {
     // Receive a general message from the server
@@ -12,4 +13,7 @@ public interface MessagingClient extends Remote {
     boolean connectToServer(int port) throws NotBoundException, RemoteException;
     void notify(String notification) throws RemoteException;
 
+    // Everything pending for this client, oldest first, in one call
+    void receiveBatch(List<Event> events) throws RemoteException;
+
 }
\ No newline at end of file
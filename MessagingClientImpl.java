@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
@@ -5,11 +6,21 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MessagingClientImpl extends UnicastRemoteObject implements MessagingClient {
+    private static final int FEED_PAGE_SIZE = 20;
+
     private String username;
+    private volatile String sessionToken; // Proves the password was checked, so it is not hashed again
+
+    private volatile MessagingServer server;
+    private int serverPort;
+    private SocketTransportClient socketTransport; // Set when -Dclient.transport=socket
 
-    private MessagingServer server;
+    private ScheduledExecutorService heartbeat; // Started on first login
 
     protected MessagingClientImpl() throws RemoteException {
         super();
@@ -27,9 +38,27 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
     }
 
     @Override
-    public boolean connectToServer(int port) throws NotBoundException, RemoteException {
+    public synchronized boolean connectToServer(int port) throws NotBoundException, RemoteException {
         Registry registry = LocateRegistry.getRegistry("localhost", port);
         server = (MessagingServer) registry.lookup("MessagingService");
+        serverPort = port;
+        if (socketTransport != null) {
+            socketTransport.close();
+            socketTransport = null;
+        }
+        if ("socket".equals(System.getProperty("client.transport"))) {
+            int socketPort = server.getSocketPort();
+            if (socketPort == 0) {
+                System.out.println("Server has no socket transport, using RMI");
+            } else {
+                try {
+                    socketTransport = new SocketTransportClient("localhost", socketPort, this);
+                    server = socketTransport.getServer();
+                } catch (IOException e) {
+                    System.err.println("Socket transport unavailable, using RMI: " + e.getMessage());
+                }
+            }
+        }
         System.out.println("Connected to server at port: " + port);
         return true;
     }
@@ -39,6 +68,17 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
         System.out.println("[Notification] " + notification);
     }
 
+    @Override
+    public void receiveBatch(List<Event> events) throws RemoteException {
+        for (Event event : events) {
+            if (event.getType().isMessage()) {
+                receiveMessage(event.getText());
+            } else {
+                notify(event.getText());
+            }
+        }
+    }
+
 
     public static void main(String[] args) {
         try {
@@ -51,6 +91,9 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
                     System.out.println("\nShutting down...");
                     coordinator.removeClient(client);
                     client.server.removeOnlineUser(client.username);
+                    if (client.sessionToken != null) {
+                        client.server.endSession(client.sessionToken);
+                    }
                     client.server.decrementLoad();
                 } catch (Exception e) {
                     System.err.println("Failed to notify load balancer on shutdown: " + e.getMessage());
@@ -159,12 +202,24 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
                         System.out.print("Enter password: ");
                         String loginPassword = scanner.nextLine();
 
-                        if (client.server.loginUser(loginUsername, loginPassword)) {
+                        String token = client.server.login(loginUsername, loginPassword);
+                        if (token != null) {
                             System.out.println("Login successful.");
                             client.username = loginUsername;
+                            client.sessionToken = token;
                             isLoggedIn = true;
 
+                            // Move to the user's home server if the load balancer places users by name
+                            int homePort = coordinator.getServerForUser(client.username);
+                            if (homePort != 0 && homePort != client.serverPort) {
+                                client.server.decrementLoad();
+                                client.connectToServer(homePort);
+                                coordinator.addClient(client, homePort);
+                                client.server.incrementLoad();
+                            }
+
                             client.server.registerClient(client.username, client);
+                            client.startHeartbeat();
                         } else {
                             System.out.println("Invalid username or password.");
                         }
@@ -310,7 +365,14 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
                             }
                             break;
                         case 4:
-                            client.displayFeed();
+                            String feedCursor = client.displayFeed(null);
+                            while (feedCursor != null) {
+                                System.out.print("Show more posts? (y/n): ");
+                                if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                                    break;
+                                }
+                                feedCursor = client.displayFeed(feedCursor);
+                            }
                             break;
                         case 5:
                             client.displayFeed();
@@ -429,19 +491,26 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
                             String endInput = scanner.nextLine().trim();
                             Instant endTime = endInput.isEmpty() ? null : Instant.parse(endInput + ":00Z");
 
-                            List<Post> searchResults = client.server.searchPosts(
-                                    keyword.isEmpty() ? null : keyword,
-                                    searchUsername,
-                                    startTime,
-                                    endTime
-                            );
-
                             System.out.println("\nSearch Results:");
-                            for (Post post : searchResults) {
-                                System.out.println(post.getId() + ". " + post.getUsername() + ": " + post.getContent());
-                                System.out.println("   Likes: " + post.getLikes());
-                                System.out.println("   Comments: " + post.getComments());
-                            }
+                            String searchCursor = null;
+                            do {
+                                PostPage searchResults = client.server.searchPosts(
+                                        keyword.isEmpty() ? null : keyword,
+                                        searchUsername,
+                                        startTime,
+                                        endTime,
+                                        searchCursor,
+                                        FEED_PAGE_SIZE
+                                );
+                                printPosts(searchResults.getPosts());
+                                searchCursor = searchResults.getNextCursor();
+                                if (searchCursor != null) {
+                                    System.out.print("Show more results? (y/n): ");
+                                    if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                                        break;
+                                    }
+                                }
+                            } while (searchCursor != null);
                             break;
                         case 13: // Exit
                             System.exit(0);
@@ -462,10 +531,52 @@ public class MessagingClientImpl extends UnicastRemoteObject implements Messagin
         }
     }
 
+    // The session expires unless refreshed, so keep it alive while the client runs; if it lapsed, the session
+    // token brings the user back online without asking for the password again
+    private void startHeartbeat() {
+        if (heartbeat != null) {
+            return;
+        }
+        long intervalMillis = Long.getLong("client.heartbeatIntervalMs", 20000);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "presence-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(() -> {
+            try {
+                if (!server.heartbeat(username)) {
+                    if (username.equals(server.resumeSession(sessionToken))) {
+                        server.registerClient(username, this);
+                    } else {
+                        System.out.println("[Notification] Your session has expired, please log in again.");
+                    }
+                }
+            } catch (RemoteException e) {
+                System.err.println("Heartbeat failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
     private void displayFeed() throws RemoteException {
-        List<Post> feed = server.getFeed();
-        System.out.println("\nFeed:");
-        for (Post post : feed) {
+        displayFeed(null);
+    }
+
+    // Print one page of the feed and return the cursor of the next page, or null if there is none
+    private String displayFeed(String cursor) throws RemoteException {
+        PostPage feed = server.getFeed(username, cursor, FEED_PAGE_SIZE);
+        if (cursor == null) {
+            System.out.println("\nFeed:");
+            for (Story story : server.getStories(username)) {
+                System.out.println("[Story] " + story.getUsername() + ": " + story.getContent());
+            }
+        }
+        printPosts(feed.getPosts());
+        return feed.getNextCursor();
+    }
+
+    private static void printPosts(List<Post> posts) {
+        for (Post post : posts) {
             System.out.println(post.getId() + ". " + post.getUsername() + ": " + post.getContent());
             System.out.println("   Likes: " + post.getLikes());
             System.out.println("   Comments: " + post.getComments());
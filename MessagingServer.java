@@ -15,21 +15,28 @@ public interface MessagingServer extends Remote {
     void joinChatroom(String roomName, MessagingClient client) throws RemoteException;
     void sendMessageToChatroom(String roomName, String message, MessagingClient sender) throws RemoteException;
     void createPost(String username, String content) throws RemoteException;
-    List<Post> getFeed() throws RemoteException;
+    PostPage getFeed(String username, String cursor, int limit) throws RemoteException;
+    List<Story> getStories(String username) throws RemoteException; // Live stories by the user and the people they follow
     void likePost(String username, int postId) throws RemoteException;
     void commentOnPost(String username, int postId, String comment) throws RemoteException;
     void followUser(String follower, String followee) throws RemoteException; // New
     void unfollowUser(String follower, String followee) throws RemoteException; // New
     boolean registerUser(String username, String password) throws RemoteException, NoSuchAlgorithmException;
     boolean loginUser(String username, String password) throws RemoteException, NoSuchAlgorithmException;
+    String login(String username, String password) throws RemoteException; // Session token, null if the password is wrong
+    String resumeSession(String token) throws RemoteException; // The token's username, null if it is no longer valid
+    void endSession(String token) throws RemoteException;
     void registerClient(String username, MessagingClient client) throws RemoteException;
     Map<String, Set<String>> listOnlineUsers() throws RemoteException; // Updated
     void removeOnlineUser(String username) throws RemoteException;
+    boolean heartbeat(String username) throws RemoteException; // Keeps the session alive, false if it expired
     void ping() throws RemoteException;
+    int getSocketPort() throws RemoteException; // Port of the framed socket transport, 0 if it is off
     void decrementLoad() throws RemoteException;
     void incrementLoad() throws RemoteException;
     void deletePost(int postId) throws RemoteException;
     void shareContent(int postId, String sharerUsername, String recipientUsername) throws RemoteException;
     void createStory(String username, String content, int durationInSeconds) throws RemoteException;
     List<Post> searchPosts(String keyword, String username, Instant startTime, Instant endTime) throws RemoteException;
+    PostPage searchPosts(String keyword, String username, Instant startTime, Instant endTime, String cursor, int limit) throws RemoteException;
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.*;
@@ -14,9 +15,20 @@ import java.util.concurrent.TimeUnit;
 import static java.lang.Integer.parseInt;
 
 public class MessagingServerImpl extends UnicastRemoteObject implements MessagingServer {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_STORIES = 200; // Per getStories call
+
+    private final StubCache stubs = new StubCache();
     private final LoadBalancer coordinator;
+    private final LogShipper logShipper;
     private final DatabaseServer databaseServer;
-    private int currentLoad = 0;
+    private final LoadMonitor monitor = new LoadMonitor();
+    private final DeliveryService delivery = DeliveryService.fromSystemProperties(); // Client callbacks, off the request thread
+    private final PasswordHasher passwords = PasswordHasher.shared(); // Slow hashing, on one bounded pool per JVM
+    private final ScheduledExecutorService metricsReporter;
+    private AuthStats databaseAuthStats = AuthStats.NONE; // Only touched by the metrics reporter
+    private MessagingServer monitored; // The instrumented object bound in the registry, once exported
+    private SocketTransportServer socketTransport; // Same calls over framed sockets, for clients that opt in
 
     private final int currentPort;
 
@@ -24,22 +36,78 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
         super();
         this.currentPort = currentPort;
 
-        // Pull load balancer into server for updating load
-        Registry registry = LocateRegistry.getRegistry(1099);
-        this.coordinator = (LoadBalancer) registry.lookup("ServerCoordinator");
+        // Pull load balancer into server for updating load; the stubs reconnect if the remote side restarts
+        this.coordinator = stubs.proxy("localhost", 1099, "ServerCoordinator", LoadBalancer.class);
+        this.logShipper = new LogShipper(coordinator,
+                Integer.getInteger("log.bufferSize", 8192),
+                Integer.getInteger("log.batchSize", 256),
+                Long.getLong("log.flushIntervalMs", 200));
+
+        this.databaseServer = stubs.proxy("localhost", 1098, "DatabaseServer", DatabaseServer.class); // Database server port
+
+        // Fail fast if either is not up
+        stubs.get("localhost", 1099, "ServerCoordinator", LoadBalancer.class);
+        stubs.get("localhost", 1098, "DatabaseServer", DatabaseServer.class);
+
+        // Report load to the load balancer on a schedule instead of on every session change
+        monitor.setQueueDepth(() -> logShipper.getQueueDepth() + delivery.getQueueDepth());
+        monitor.setAuthStats(this::authStats);
+        metricsReporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long reportIntervalMillis = Long.getLong("metrics.reportIntervalMs", 1000);
+        metricsReporter.scheduleAtFixedRate(this::reportMetrics, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+    }
 
-        registry = LocateRegistry.getRegistry(1098); // Database server port
-        this.databaseServer = (DatabaseServer) registry.lookup("DatabaseServer");
+    // Registrations hash on this JVM's pool, logins on the database's; embedded in one JVM they are the same pool
+    private AuthStats authStats() {
+        try {
+            databaseAuthStats = databaseServer.getAuthStats();
+        } catch (RemoteException e) {
+            // Keep the last known counters, the metrics report itself must not fail
+        }
+        return passwords.stats().plus(databaseAuthStats);
+    }
+
+    private void reportMetrics() {
+        try {
+            coordinator.reportMetrics(monitor.snapshot(currentPort));
+        } catch (Exception e) {
+            System.err.println("Failed to report metrics to load balancer: " + e.getMessage());
+        }
+    }
 
-        // Start story expiry checker
-        
-        List<Story> stories = databaseServer.getStories();
-        ScheduledExecutorService storyExpiryExecutor = Executors.newScheduledThreadPool(1);
-        storyExpiryExecutor.scheduleAtFixedRate(() -> {
-            synchronized (stories) {
-                stories.removeIf(Story::isExpired);
+    // The object to bind in the registry: this server, with every remote call measured by the load monitor
+    public synchronized MessagingServer exportMonitored() throws RemoteException {
+        monitored = monitor.instrument(this, MessagingServer.class);
+        if (Boolean.parseBoolean(System.getProperty("transport.socket", "false"))) { // Opt in, it has no authentication of its own
+            try {
+                socketTransport = new SocketTransportServer(monitored, Integer.getInteger("transport.socketPort", 0));
+            } catch (IOException e) {
+                System.err.println("Socket transport not started, RMI only: " + e.getMessage());
             }
-        }, 1, 1, TimeUnit.MINUTES);
+        }
+        return (MessagingServer) UnicastRemoteObject.exportObject(monitored, 0);
+    }
+
+    // Stop background work and unexport, for servers hosted inside another JVM
+    public synchronized void shutdown() {
+        metricsReporter.shutdownNow();
+        logShipper.close();
+        if (socketTransport != null) {
+            socketTransport.close();
+        }
+        delivery.shutdown();
+        try {
+            if (monitored != null) {
+                UnicastRemoteObject.unexportObject(monitored, true);
+            }
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Already unexported
+        }
     }
 
     @Override
@@ -47,7 +115,7 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
         forwardLogToLoadBalancer("Broadcasting message: " + message);
         Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
         for (Map.Entry<MessagingClient, String> entry : onlineUsers.entrySet()) {
-            entry.getKey().receiveMessage(message);
+            delivery.send(entry.getKey(), new Event(Event.Type.BROADCAST, null, null, message));
         }
     }
 
@@ -59,126 +127,108 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
             return;
         }
         MessagingClient client = clients.get(clientIndex);
-        client.receiveMessage(message);
+        delivery.send(client, new Event(Event.Type.DM, null, null, message));
         forwardLogToLoadBalancer("Message sent to Client " + (clientIndex + 1));
     }
 
     @Override
     public boolean registerUser(String username, String password) throws RemoteException, NoSuchAlgorithmException {
-        // Hash the entered password
-        String hashedPassword = hashPassword(password);
-
-        return databaseServer.registerUser(username, hashedPassword);
+        if (databaseServer.accountExists(username)) {
+            return false; // Taken, don't spend a hash on it
+        }
+        return databaseServer.registerUser(username, passwords.hash(password));
     }
 
     @Override
     public boolean loginUser(String username, String password) throws RemoteException, NoSuchAlgorithmException {
-        // Hash the password
-        String hashedPassword = hashPassword(password);
+        if (!databaseServer.verifyPassword(username, password)) { // Checks only, no session token
+            forwardLogToLoadBalancer("Login failed for user: " + username);
+            return false;
+        }
+        return true;
+    }
 
-        return databaseServer.loginUser(username, hashedPassword);
+    @Override
+    public String login(String username, String password) throws RemoteException {
+        if (!databaseServer.verifyPassword(username, password)) {
+            forwardLogToLoadBalancer("Login failed for user: " + username);
+            return null;
+        }
+        return databaseServer.createSession(username);
     }
 
-    // Utility method to hash the password
-    private String hashPassword(String password) throws NoSuchAlgorithmException {
-        // Use SHA-256 hashing algorithm
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = md.digest(password.getBytes());
+    @Override
+    public String resumeSession(String token) throws RemoteException {
+        return databaseServer.resumeSession(token);
+    }
 
-        // Convert byte array into a Base64 encoded string for storage
-        return Base64.getEncoder().encodeToString(hashBytes);
+    @Override
+    public void endSession(String token) throws RemoteException {
+        databaseServer.endSession(token);
     }
 
     @Override
     public void registerClient(String username, MessagingClient client) throws RemoteException {
-        List<MessagingClient> clients = databaseServer.getClients();
-        clients.add(client);
-        databaseServer.saveClients(clients);
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        onlineUsers.put(client, username); // Add the client and username to the map
-        databaseServer.saveOnlineUsers(onlineUsers);
-
-        Map<String, Set<String>> followers = databaseServer.getFollowers();
-
-        if (!followers.containsKey(username)) {
-            followers.put(username, new HashSet<>());
-            databaseServer.saveFollowers(followers);
-        }
+        databaseServer.addClient(client);
+        databaseServer.addOnlineUser(client, username); // Add the client and username to the online users
+        databaseServer.addUser(username); // Make sure the user has a follower entry
 
         forwardLogToLoadBalancer("New client registered: " + username);
-        forwardLogToLoadBalancer("Total clients: " + onlineUsers.size()); // Log client count
     }
 
     @Override
     public void decrementLoad() throws RemoteException {
-        currentLoad--;
-        coordinator.updateLoad(currentLoad, currentPort);
+        monitor.clientDisconnected(); // Reported with the next metrics snapshot
     }
 
     @Override
     public void incrementLoad() throws RemoteException {
-        currentLoad++;
-        coordinator.updateLoad(currentLoad, currentPort);
+        monitor.clientConnected();
     }
 
     @Override
     public void followUser(String follower, String followee) throws RemoteException {
         forwardLogToLoadBalancer(follower + " is trying to follow " + followee);
 
-        Map<String, Set<String>> followers = databaseServer.getFollowers();
-
-        if (!followers.containsKey(followee) && !follower.equals(followee)) {
+        if (!databaseServer.addFollower(followee, follower)) {
             forwardLogToLoadBalancer(followee + " does not exist.");
             return;
         }
-        followers.get(followee).add(follower);
-        databaseServer.saveFollowers(followers);
         forwardLogToLoadBalancer(follower + " is now following " + followee);
 
-        // Notify the followed user
-        MessagingClient followeeClient = getClientByUsername(followee);
         // Notify the followee if they are online
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        if (followeeClient != null && onlineUsers.containsKey(followeeClient)) {
-            followeeClient.notify(follower + " is now following you.");
+        MessagingClient followeeClient = getClientByUsername(followee);
+        if (followeeClient != null) {
+            delivery.send(followeeClient, new Event(Event.Type.FOLLOW, follower, null, follower + " is now following you."));
         }
     }
 
 
     public void unfollowUser(String follower, String followee) throws RemoteException {
-        Map<String, Set<String>> followers = databaseServer.getFollowers();
-        if (!followers.containsKey(followee)) {
+        if (!databaseServer.removeFollower(followee, follower)) {
             forwardLogToLoadBalancer(followee + " does not exist.");
             return;
         }
-
-        followers.get(followee).remove(follower);
-        databaseServer.saveFollowers(followers);
         forwardLogToLoadBalancer(follower + " unfollowed " + followee);
     }
 
     @Override
     public Map<String, Set<String>> listOnlineUsers() throws RemoteException {
-        Map<String, Set<String>> onlineUsersWithFollowers = new HashMap<>();
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        Map<String, Set<String>> followers = databaseServer.getFollowers();
-        for (Map.Entry<MessagingClient, String> entry : onlineUsers.entrySet()) {
-            String username = entry.getValue();
-            onlineUsersWithFollowers.put(username, followers.getOrDefault(username, new HashSet<>()));
-        }
-        return onlineUsersWithFollowers;
+        return databaseServer.getFollowersOf(databaseServer.getOnlineUsernames());
     }
 
     @Override 
     public void removeOnlineUser(String username) throws RemoteException {
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        for (Map.Entry<MessagingClient, String> entry : onlineUsers.entrySet()) {
-            if (entry.getValue().equals(username)) {
-                onlineUsers.remove(entry.getKey());
-                break;
-            }
+        MessagingClient client = getClientByUsername(username);
+        databaseServer.removeOnlineUser(username);
+        if (client != null) {
+            delivery.forget(client);
         }
-        databaseServer.saveOnlineUsers(onlineUsers);
+    }
+
+    @Override
+    public boolean heartbeat(String username) throws RemoteException {
+        return databaseServer.touchOnlineUser(username);
     }
 
 
@@ -194,11 +244,8 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
 
     @Override
     public void createChatroom(String roomName) throws RemoteException {
-        Map<String, List<MessagingClient>> chatrooms = databaseServer.getChatrooms();
-        if (!chatrooms.containsKey(roomName)) {
-            chatrooms.put(roomName, new ArrayList<>());
+        if (databaseServer.createChatroom(roomName)) {
             forwardLogToLoadBalancer("Chatroom created: " + roomName);
-            databaseServer.saveChatrooms(chatrooms);
         } else {
             forwardLogToLoadBalancer("Chatroom already exists: " + roomName);
         }
@@ -206,137 +253,125 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
 
     @Override
     public List<String> getChatrooms() throws RemoteException {
-        Map<String, List<MessagingClient>> chatrooms = databaseServer.getChatrooms();
-        return new ArrayList<>(chatrooms.keySet());
+        return databaseServer.getChatroomNames();
     }
 
     @Override
     public void joinChatroom(String roomName, MessagingClient client) throws RemoteException {
-        Map<String, List<MessagingClient>> chatrooms = databaseServer.getChatrooms();
-        if (chatrooms.containsKey(roomName)) {
-            chatrooms.get(roomName).add(client);
-            forwardLogToLoadBalancer("Client joined chatroom: " + roomName);
-            databaseServer.saveChatrooms(chatrooms);
-        } else {
-            forwardLogToLoadBalancer("Chatroom not found: " + roomName);
+        String username = databaseServer.getOnlineUsername(client);
+        if (username == null) {
+            forwardLogToLoadBalancer("Only logged-in users can join chatroom: " + roomName);
+            return;
+        }
+        if (!databaseServer.joinChatroom(roomName, username)) {
+            if (databaseServer.getChatroomNames().contains(roomName)) {
+                forwardLogToLoadBalancer(username + " is already in chatroom: " + roomName); // Already caught up
+            } else {
+                forwardLogToLoadBalancer("Chatroom not found: " + roomName);
+            }
+            return;
+        }
+        forwardLogToLoadBalancer(username + " joined chatroom: " + roomName);
+
+        // Catch the new member up on the room's recent messages
+        for (ChatMessage chatMessage : databaseServer.getChatHistory(roomName, 0)) {
+            delivery.send(client, chatEvent(chatMessage));
         }
     }
 
     @Override
     public void sendMessageToChatroom(String roomName, String message, MessagingClient sender) throws RemoteException {
-        Map<String, List<MessagingClient>> chatrooms = databaseServer.getChatrooms();
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        if (chatrooms.containsKey(roomName)) {
-            for (MessagingClient client : chatrooms.get(roomName)) {
-                if (!client.equals(sender)) {
-                    // include the username of the sender in the message
-                    client.receiveMessage(onlineUsers.get(sender) + ": " + message);
-                }
-            }
-        } else {
+        String senderUsername = databaseServer.getOnlineUsername(sender);
+        if (senderUsername == null) {
+            forwardLogToLoadBalancer("Only logged-in users can post to chatroom: " + roomName);
+            return;
+        }
+        ChatMessage chatMessage = databaseServer.postChatMessage(roomName, senderUsername, message);
+        if (chatMessage == null) {
             forwardLogToLoadBalancer("Chatroom not found: " + roomName);
+            return;
+        }
+
+        // Only this room's members are fetched; the delivery service fans out to their mailboxes in parallel
+        Map<String, MessagingClient> online = databaseServer.getOnlineClients(databaseServer.getChatroomMemberNames(roomName));
+        Event event = chatEvent(chatMessage);
+        for (Map.Entry<String, MessagingClient> member : online.entrySet()) {
+            if (!member.getValue().equals(sender)) {
+                delivery.send(member.getValue(), event);
+            }
         }
     }
 
+    // include the username of the sender in the message
+    private static Event chatEvent(ChatMessage chatMessage) {
+        return new Event(Event.Type.CHAT, chatMessage.getSender(), chatMessage.getRoom(), chatMessage.getSequence(),
+                chatMessage.getSender() + ": " + chatMessage.getText());
+    }
+
     @Override
     public void createPost(String username, String content) throws RemoteException {
-        List<Post> posts = databaseServer.getPosts();
-        Post post = new Post(username, content, databaseServer.getPostId() + 1);
-        posts.add(post);
+        databaseServer.appendPost(username, content);
         forwardLogToLoadBalancer("New post created by " + username + ": " + content);
-        databaseServer.savePosts(posts);
     }
 
     @Override
-    public List<Post> getFeed() throws RemoteException {
-        List<Post> posts = databaseServer.getPosts();
-        List<Story> stories = databaseServer.getStories();
-
-        // Add regular posts
-        List<Post> combinedFeed = new ArrayList<>(posts);
-
-        // Add non-expired stories
-        Iterator<Story> iterator = stories.iterator();
-        while (iterator.hasNext()) {
-            Story story = iterator.next();
-            if (story.isExpired()) {
-                iterator.remove(); // Remove expired stories
-                
-            } else {
-                Post pseudoPost = new Post(story.getUsername(), "[Story] " + story.getContent(), databaseServer.getPostId() + 1);
-                combinedFeed.add(pseudoPost);
-            }
-        }
+    public PostPage getFeed(String username, String cursor, int limit) throws RemoteException {
+        // Posts from the user's precomputed home timeline; stories are fetched separately so pages stay in cursor order
+        return databaseServer.getTimeline(username, cursor, clampPageSize(limit));
+    }
 
-        return combinedFeed;
+    @Override
+    public List<Story> getStories(String username) throws RemoteException {
+        Set<String> authors = new HashSet<>(databaseServer.getFollowing(username));
+        authors.add(username);
+        return databaseServer.getStoriesBy(authors, MAX_STORIES); // Unexpired ones only, filtered in the database
     }
+
     @Override
     public void likePost(String username, int postId) throws RemoteException {
-        List<Post> posts = databaseServer.getPosts();
-        for (Post post : posts) {
-            if (post.getId() == postId) {
-                post.addLike();
-                forwardLogToLoadBalancer(username + " liked post " + postId);
-
-                // Notify the post owner
-                String postOwner = post.getUsername();
-                MessagingClient ownerClient = getClientByUsername(postOwner);
-                Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-                if (ownerClient != null && onlineUsers.containsKey(ownerClient)) {
-                    ownerClient.notify(username + " liked your post: " + post.getContent());
-                }
-
-                databaseServer.savePosts(posts);
-                return;
-            }
+        Post post = databaseServer.incrementLikes(postId);
+        if (post == null) {
+            forwardLogToLoadBalancer("Post not found: " + postId);
+            return;
+        }
+        forwardLogToLoadBalancer(username + " liked post " + postId);
+
+        // Notify the post owner
+        MessagingClient ownerClient = getClientByUsername(post.getUsername());
+        if (ownerClient != null) {
+            delivery.send(ownerClient, new Event(Event.Type.LIKE, username, null, username + " liked your post: " + post.getContent()));
         }
-        forwardLogToLoadBalancer("Post not found: " + postId);
     }
 
 
     @Override
     public void commentOnPost(String username, int postId, String comment) throws RemoteException {
-        List<Post> posts = databaseServer.getPosts();
-        for (Post post : posts) {
-            if (post.getId() == postId) {
-                post.addComment(username + ": " + comment);
-                forwardLogToLoadBalancer(username + " commented on post " + postId);
-
-                // Notify the post owner
-                String postOwner = post.getUsername();
-                MessagingClient ownerClient = getClientByUsername(postOwner);
-                Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-                if (ownerClient != null && onlineUsers.containsKey(ownerClient)) {
-                    ownerClient.notify(username + " commented on your post: " + post.getContent());
-                }
-
-                databaseServer.savePosts(posts);
-                return;
-            }
+        Post post = databaseServer.addComment(postId, username + ": " + comment);
+        if (post == null) {
+            forwardLogToLoadBalancer("Post not found: " + postId);
+            return;
+        }
+        forwardLogToLoadBalancer(username + " commented on post " + postId);
+
+        // Notify the post owner
+        MessagingClient ownerClient = getClientByUsername(post.getUsername());
+        if (ownerClient != null) {
+            delivery.send(ownerClient, new Event(Event.Type.COMMENT, username, null, username + " commented on your post: " + post.getContent()));
         }
-        forwardLogToLoadBalancer("Post not found: " + postId);
     }
 
     private MessagingClient getClientByUsername(String username) throws RemoteException {
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-        for (Map.Entry<MessagingClient, String> entry : onlineUsers.entrySet()) {
-            forwardLogToLoadBalancer(entry.getValue());
-            forwardLogToLoadBalancer(username);
-            if (entry.getValue().equals(username)) {
-                return entry.getKey();
-            }
-        }
-        return null; // User not found or offline
+        return databaseServer.getOnlineClient(username); // null if the user is offline
     }
 
+    // Queued and shipped in batches by the log shipper, never a remote call on the request thread
     private void forwardLogToLoadBalancer(String logMessage) {
-        try {
-            Registry registry = LocateRegistry.getRegistry(1099); // Load balancer's registry
-            LoadBalancer loadBalancer = (LoadBalancer) registry.lookup("ServerCoordinator");
-            loadBalancer.logMessage(logMessage);
-        } catch (Exception e) {
-            forwardLogToLoadBalancer("Failed to send log to load balancer: " + e.getMessage());
-        }
+        logShipper.log(logMessage);
+    }
+
+    @Override
+    public synchronized int getSocketPort() throws RemoteException {
+        return socketTransport == null ? 0 : socketTransport.getPort();
     }
 
     @Override
@@ -346,53 +381,26 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
 
     @Override
     public void deletePost(int postId) throws RemoteException {
-        List<Post> posts = databaseServer.getPosts();
-        boolean removed = posts.removeIf(post -> post.getId() == postId);
-        if (removed) {
+        if (databaseServer.removePost(postId)) {
             forwardLogToLoadBalancer("Post with ID " + postId + " deleted.");
         } else {
             forwardLogToLoadBalancer("Post with ID " + postId + " not found.");
         }
-        databaseServer.savePosts(posts);
     }
 
     @Override
     public void shareContent(int contentId, String sharerUsername, String recipientUsername) throws RemoteException {
-        Post sharedPost = null;
-        Story sharedStory = null;
-        List<Post> posts = databaseServer.getPosts();
-        List<Story> stories = databaseServer.getStories();
-
-        // Find the post to share
-        for (Post post : posts) {
-            if (post.getId() == contentId) {
-                sharedPost = post;
-                break;
-            }
-        }
-
-        for (Story story : stories) {
-            if (story.getId() == contentId) {
-                sharedStory = story;
-                break;
-            }
-        }
+        // Find the post or story to share
+        Post sharedPost = databaseServer.getPost(contentId);
+        Story sharedStory = databaseServer.getStory(contentId);
 
         if (sharedPost == null && sharedStory == null) {
             forwardLogToLoadBalancer("Post or Story with ID " + contentId + " not found.");
             return;
         }
 
-        Map<MessagingClient, String> onlineUsers = databaseServer.getOnlineUsers();
-
         // Find the recipient client
-        MessagingClient recipientClient = null;
-        for (Map.Entry<MessagingClient, String> entry : onlineUsers.entrySet()) {
-            if (entry.getValue().equals(recipientUsername)) {
-                recipientClient = entry.getKey();
-                break;
-            }
-        }
+        MessagingClient recipientClient = getClientByUsername(recipientUsername);
 
         if (recipientClient == null) {
             forwardLogToLoadBalancer("Recipient user " + recipientUsername + " is not online.");
@@ -405,14 +413,14 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
                     sharedPost.getId() + ". " + sharedPost.getUsername() + ": " + sharedPost.getContent() + "\n" +
                     "   Likes: " + sharedPost.getLikes() + "\n" +
                     "   Comments: " + sharedPost.getComments();
-            recipientClient.notify(message);
+            delivery.send(recipientClient, new Event(Event.Type.SHARE, sharerUsername, null, message));
             forwardLogToLoadBalancer(sharerUsername + " shared post ID " + contentId + " with " + recipientUsername);
         }
         if (sharedStory != null) {
             // Notify the recipient
             String message = sharerUsername + " shared a story with you:\n" +
                     sharedStory.getId() + ". " + sharedStory.getUsername() + ": " + sharedStory.getContent();
-            recipientClient.notify(message);
+            delivery.send(recipientClient, new Event(Event.Type.SHARE, sharerUsername, null, message));
             forwardLogToLoadBalancer(sharerUsername + " shared story ID " + contentId + " with " + recipientUsername);
         }
 
@@ -422,28 +430,23 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
 
     @Override
     public void createStory(String username, String content, int durationInSeconds) throws RemoteException {
-        List<Story> stories = databaseServer.getStories();
-        Story story = new Story(databaseServer.getPostId() + 1, username, content, durationInSeconds);
-        stories.add(story);
+        databaseServer.appendStory(username, content, durationInSeconds);
         forwardLogToLoadBalancer("New story created by " + username + ": " + content);
-        databaseServer.saveStories(stories);
     }
 
     @Override
     public List<Post> searchPosts(String keyword, String username, Instant startTime, Instant endTime) throws RemoteException {
-        List<Post> results = new ArrayList<>();
-        List<Post> posts = databaseServer.getPosts();
-        for (Post post : posts) {
-            boolean matchesKeyword = (keyword == null || post.getContent().toLowerCase().contains(keyword.toLowerCase()));
-            boolean matchesUsername = (username == null || post.getUsername().equalsIgnoreCase(username));
-            boolean matchesTimeRange = (startTime == null || !post.getTimestamp().isBefore(startTime)) &&
-                    (endTime == null || !post.getTimestamp().isAfter(endTime));
-
-            if (matchesKeyword && matchesUsername && matchesTimeRange) {
-                results.add(post);
-            }
-        }
-        return results;
+        // Unpaged variant, kept for older clients
+        return databaseServer.searchPosts(keyword, username, startTime, endTime, null, Integer.MAX_VALUE).getPosts();
+    }
+
+    @Override
+    public PostPage searchPosts(String keyword, String username, Instant startTime, Instant endTime, String cursor, int limit) throws RemoteException {
+        return databaseServer.searchPosts(keyword, username, startTime, endTime, cursor, clampPageSize(limit));
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
     }
 
 
@@ -454,7 +457,7 @@ public class MessagingServerImpl extends UnicastRemoteObject implements Messagin
        LocateRegistry.createRegistry(port);
        MessagingServerImpl server = new MessagingServerImpl(port);
        Registry registry = LocateRegistry.getRegistry(port);
-       registry.rebind("MessagingService", server);
+       registry.rebind("MessagingService", server.exportMonitored());
    }
 
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted PBKDF2 password hashing on a small bounded pool. Hashing is deliberately slow, so it never runs on
+// the RMI threads that serve feeds and messages: a login storm fills this pool's queue and is turned away
+// with "busy" instead of taking every CPU. Stored hashes look like pbkdf2$<iterations>$<salt>$<hash>, so
+// the cost can be raised later without invalidating existing accounts; unsalted SHA-256 hashes written by
+// older versions still verify and are upgraded on the next successful login. There is one pool per JVM
+// (shared()), however many servers the JVM hosts.
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final String dummyHash; // Checked for unknown users, so they cost the same as a wrong password
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final long poolId = random.nextLong();
+
+    public PasswordHasher(int iterations, int threads, int queueSize, long timeoutMillis) {
+        this.iterations = iterations;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), task -> {
+                    Thread thread = new Thread(task, "password-hasher");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        byte[] unguessable = new byte[SALT_BYTES];
+        random.nextBytes(unguessable);
+        this.dummyHash = hashNow(Base64.getEncoder().encodeToString(unguessable));
+    }
+
+    public static PasswordHasher shared() {
+        return Shared.INSTANCE;
+    }
+
+    public static PasswordHasher fromSystemProperties() {
+        return new PasswordHasher(
+                Integer.getInteger("auth.iterations", 120000),
+                Integer.getInteger("auth.hashThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                Integer.getInteger("auth.queueSize", 64),
+                Long.getLong("auth.timeoutMs", 10000));
+    }
+
+    // A new stored hash for the password, computed on the pool
+    public String hash(String password) throws RemoteException {
+        return submit(() -> hashNow(password));
+    }
+
+    // Check a password against a stored hash, on the pool; a null hash (no such account) takes as long and fails
+    public boolean verify(String password, String stored) throws RemoteException {
+        return submit(() -> verifyNow(password, stored));
+    }
+
+    // True for hashes that should be replaced with one at the current cost
+    public boolean needsRehash(String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true; // Unreadable cost, replace it
+        }
+    }
+
+    // Inline versions, for startup and tools where there is no request thread to protect
+    public String hashNow(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    public boolean verifyNow(String password, String stored) {
+        if (password == null) {
+            return false;
+        }
+        if (stored == null) {
+            verifyNow(password, dummyHash);
+            return false;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length == 4 && PREFIX.equals(parts[0])) {
+            try {
+                Base64.Decoder base64 = Base64.getDecoder();
+                byte[] expected = base64.decode(parts[3]);
+                return MessageDigest.isEqual(expected, pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+            } catch (IllegalArgumentException e) {
+                return false; // Malformed stored hash
+            }
+        }
+        return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                legacyHash(password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The old format: unsalted SHA-256 of the platform-default bytes, which is what older versions stored
+    static String legacyHash(String password) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(password.getBytes()));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // Cumulative counters; readers work out their own intervals from two of these
+    public AuthStats stats() {
+        return new AuthStats(poolId, getQueueDepth(), hashes.sum(), hashNanos.sum(), rejected.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "PasswordHasher{iterations=" + iterations + ", threads=" + executor.getMaximumPoolSize() + ", queued="
+                + getQueueDepth() + ", hashes=" + hashes.sum() + ", rejected=" + rejected.sum() + "}";
+    }
+
+    private <T> T submit(Callable<T> work) throws RemoteException {
+        Future<T> result;
+        try {
+            result = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RemoteException("Authentication is busy, try again shortly");
+        }
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new RemoteException("Authentication timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while authenticating");
+        } catch (ExecutionException e) {
+            throw new RemoteException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static class Shared {
+        static final PasswordHasher INSTANCE = fromSystemProperties();
+    }
+
+    private byte[] pbkdf2(String password, byte[] salt, int rounds) {
+        long start = System.nanoTime();
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        } finally {
+            spec.clearPassword();
+            hashes.increment();
+            hashNanos.add(System.nanoTime() - start);
+        }
+    }
+}
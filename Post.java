@@ -1,24 +1,37 @@
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Post implements Serializable {
+    private static final long serialVersionUID = -6160714292686023990L; // Pinned to the value computed before WireFormat
     private static int nextId = 1; // Static ID generator
     private final int id;         // Unique ID of the post
     private final String username;
     private final String content;
-    private int likes;
+    private final AtomicInteger likes; // Posts are updated in place by concurrent servers
     private final List<String> comments;
     private final Instant timestamp;
 
     public Post(String username, String content, int postId) {
+        this(postId, username, content, Instant.now());
+    }
+
+    // Used when restoring a post from the write-ahead log
+    public Post(int postId, String username, String content, Instant timestamp) {
+        this(postId, username, content, timestamp, 0, List.of());
+    }
+
+    // Used when restoring a post from a post segment
+    public Post(int postId, String username, String content, Instant timestamp, int likes, List<String> comments) {
         this.id = postId;
         this.username = username;
         this.content = content;
-        this.likes = 0;
-        this.comments = new ArrayList<>();
-        this.timestamp = Instant.now();
+        this.likes = new AtomicInteger(likes);
+        this.comments = new CopyOnWriteArrayList<>(comments);
+        this.timestamp = timestamp;
     }
 
     public int getId() {
@@ -34,7 +47,7 @@ public class Post implements Serializable {
     }
 
     public int getLikes() {
-        return likes;
+        return likes.get();
     }
 
     public List<String> getComments() {
@@ -46,16 +59,21 @@ public class Post implements Serializable {
     }
 
     public void addLike() {
-        likes++;
+        likes.incrementAndGet();
     }
 
     public void addComment(String comment) {
         comments.add(comment);
     }
 
+    // Sent as a compact WireFormat.PostForm
+    private Object writeReplace() throws ObjectStreamException {
+        return new WireFormat.PostForm(this);
+    }
+
     @Override
     public String toString() {
         return "Post{id=" + id + ", username='" + username + "', content='" + content +
-                "', likes=" + likes + ", comments=" + comments + '}';
+                "', likes=" + likes.get() + ", comments=" + comments + '}';
     }
 }
@@ -0,0 +1,69 @@
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+
+// One page of posts, newest first, plus an opaque cursor for the next page (null on the last page).
+// The cursor encodes the (timestamp, id) of the last post, so paging stays stable while new posts arrive.
+public class PostPage implements Serializable {
+    private static final long serialVersionUID = -3413724697345979114L; // Pinned to the value computed before WireFormat
+    private final List<Post> posts;
+    private final String nextCursor;
+
+    public PostPage(List<Post> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Post> getPosts() {
+        return posts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // Take up to limit posts from a newest-first iterator
+    public static PostPage of(Iterator<Post> newestFirst, int limit) {
+        List<Post> page = new ArrayList<>(Math.min(limit, 64));
+        while (page.size() < limit && newestFirst.hasNext()) {
+            page.add(newestFirst.next());
+        }
+        String nextCursor = newestFirst.hasNext() && !page.isEmpty() ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new PostPage(page, nextCursor);
+    }
+
+    public static String encodeCursor(Post post) {
+        Instant timestamp = post.getTimestamp();
+        String position = timestamp.getEpochSecond() + ":" + timestamp.getNano() + ":" + post.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Decode a cursor into a probe post that sorts exactly where the last returned post did; null means first page
+    public static Post decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            Instant timestamp = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new Post(Integer.parseInt(parts[2]), null, null, timestamp);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    // Sent as a compact WireFormat.PageForm, with the posts inline
+    private Object writeReplace() throws ObjectStreamException {
+        return new WireFormat.PageForm(this);
+    }
+
+    @Override
+    public String toString() {
+        return "PostPage{posts=" + posts + ", nextCursor='" + nextCursor + "'}";
+    }
+}
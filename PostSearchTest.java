@@ -0,0 +1,61 @@
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+// Checks time- and author-bounded post searches against a plain filter over all posts, on hot partitions
+// and again after compacting them, including inverted ranges and a cursor older than the start.
+// Usage: java PostSearchTest [posts]
+public class PostSearchTest {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+        Random random = new Random(9); // Fixed seed so failures reproduce
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        List<Post> all = new ArrayList<>();
+        PostStore store = new PostStore();
+        for (int i = 1; i <= count; i++) {
+            Post post = new Post(i, "user" + random.nextInt(20), "post " + i, base.plusSeconds(random.nextInt(7 * 24 * 3600)));
+            all.add(post);
+            store.add(post);
+        }
+
+        int checked = checkAll(store, all, base, random);
+        int compacted = store.compactPartitionsBefore(base.plus(8, ChronoUnit.DAYS));
+        checked += checkAll(store, all, base, random);
+        System.out.println(checked + " searches matched, " + compacted + " partitions compacted in between");
+    }
+
+    private static int checkAll(PostStore store, List<Post> all, Instant base, Random random) {
+        int checked = 0;
+        for (int i = 0; i < 500; i++) {
+            Instant start = base.plusSeconds(random.nextInt(8 * 24 * 3600));
+            Instant end = base.plusSeconds(random.nextInt(8 * 24 * 3600)); // Before start about half the time
+            String author = random.nextBoolean() ? null : "User" + random.nextInt(20);
+            Post cursor = random.nextBoolean() ? null : all.get(random.nextInt(all.size()));
+            check(store, all, start, end, author, cursor);
+            checked++;
+        }
+        check(store, all, base.plusSeconds(3600), base, null, null); // Inverted range, no author
+        check(store, all, base.plusSeconds(3600), base.plusSeconds(7200), null, all.get(0)); // Cursor may be before the start
+        return checked + 2;
+    }
+
+    private static void check(PostStore store, List<Post> all, Instant start, Instant end, String author, Post cursor) {
+        List<Post> expected = new ArrayList<>();
+        for (Post post : all) {
+            if (!post.getTimestamp().isBefore(start) && !post.getTimestamp().isAfter(end)
+                    && (author == null || post.getUsername().equalsIgnoreCase(author))
+                    && (cursor == null || PostStore.TIME_ORDER.compare(post, cursor) < 0)) {
+                expected.add(post);
+            }
+        }
+        expected.sort(PostStore.TIME_ORDER.reversed());
+
+        List<Post> actual = new ArrayList<>();
+        store.search(null, author, start, end, cursor).forEachRemaining(actual::add);
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException("Search " + start + " to " + end + " by " + author + " after " + cursor
+                    + " returned " + actual.size() + " posts, expected " + expected.size());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Compact, append-only binary file of posts, read through a MappedByteBuffer.
+//
+// Layout: a file header (magic, version) followed by tagged records.
+//   AUTHOR: tag, author id, name length, UTF-8 name          (written before the author's first post)
+//   POST:   tag, fixed-width header (id, author id, epoch second, nanos, likes, content length,
+//           comment block length), UTF-8 content, comment block (count, then length-prefixed UTF-8 comments)
+//
+// The fixed-width header lets the reader index the file without decoding content or comments.
+public class PostSegment implements Closeable {
+    private static final int MAGIC = 0x50534547; // "PSEG"
+    private static final short VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 6;
+
+    private static final byte TAG_AUTHOR = 1;
+    private static final byte TAG_POST = 2;
+
+    // Offsets inside a POST record, relative to its tag byte
+    private static final int ID_OFFSET = 1;
+    private static final int AUTHOR_OFFSET = 5;
+    private static final int SECONDS_OFFSET = 9;
+    private static final int NANOS_OFFSET = 17;
+    private static final int LIKES_OFFSET = 21;
+    private static final int CONTENT_LENGTH_OFFSET = 25;
+    private static final int COMMENTS_LENGTH_OFFSET = 29;
+    private static final int POST_HEADER_BYTES = 33;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final List<String> authors = new ArrayList<>(); // author id -> name
+    private final int[] recordOffsets; // POST records in file order
+
+    private PostSegment(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < FILE_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a post segment");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported post segment version " + buffer.getShort(4));
+        }
+
+        // Index the record headers only, content and comments are never touched here
+        List<Integer> postOffsets = new ArrayList<>();
+        int position = FILE_HEADER_BYTES;
+        while (position < buffer.limit()) {
+            byte tag = buffer.get(position);
+            if (tag == TAG_AUTHOR) {
+                int length = buffer.getInt(position + 5);
+                authors.add(decode(position + 9, length));
+                position += 9 + length;
+            } else if (tag == TAG_POST) {
+                postOffsets.add(position);
+                position += POST_HEADER_BYTES + buffer.getInt(position + CONTENT_LENGTH_OFFSET)
+                        + buffer.getInt(position + COMMENTS_LENGTH_OFFSET);
+            } else {
+                throw new IOException("Corrupt post segment at offset " + position);
+            }
+        }
+        this.recordOffsets = postOffsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static PostSegment open(Path file) throws IOException {
+        return new PostSegment(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    // Encode posts in the order given
+    public static void write(Collection<Post> posts, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        Map<String, Integer> authorIds = new HashMap<>();
+        for (Post post : posts) {
+            Integer authorId = authorIds.get(post.getUsername());
+            if (authorId == null) {
+                authorId = authorIds.size();
+                authorIds.put(post.getUsername(), authorId);
+                byte[] name = post.getUsername().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(TAG_AUTHOR);
+                out.writeInt(authorId);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+
+            byte[] content = post.getContent().getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream commentBlock = new ByteArrayOutputStream();
+            DataOutputStream commentOut = new DataOutputStream(commentBlock);
+            List<String> comments = post.getComments();
+            commentOut.writeInt(comments.size());
+            for (String comment : comments) {
+                byte[] utf8 = comment.getBytes(StandardCharsets.UTF_8);
+                commentOut.writeInt(utf8.length);
+                commentOut.write(utf8);
+            }
+
+            out.writeByte(TAG_POST);
+            out.writeInt(post.getId());
+            out.writeInt(authorId);
+            out.writeLong(post.getTimestamp().getEpochSecond());
+            out.writeInt(post.getTimestamp().getNano());
+            out.writeInt(post.getLikes());
+            out.writeInt(content.length);
+            out.writeInt(commentBlock.size());
+            out.write(content);
+            commentBlock.writeTo(out);
+        }
+        out.flush();
+    }
+
+    // Decode every post in file order
+    public void forEach(Consumer<Post> visitor) {
+        for (int offset : recordOffsets) {
+            visitor.accept(readPost(offset));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String decode(int position, int length) {
+        byte[] utf8 = new byte[length];
+        buffer.slice(position, length).get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private Post readPost(int offset) {
+        int contentLength = buffer.getInt(offset + CONTENT_LENGTH_OFFSET);
+        int position = offset + POST_HEADER_BYTES + contentLength;
+        int count = buffer.getInt(position);
+        position += 4;
+        List<String> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(position);
+            comments.add(decode(position + 4, length));
+            position += 4 + length;
+        }
+        return new Post(buffer.getInt(offset + ID_OFFSET),
+                authors.get(buffer.getInt(offset + AUTHOR_OFFSET)),
+                decode(offset + POST_HEADER_BYTES, contentLength),
+                Instant.ofEpochSecond(buffer.getLong(offset + SECONDS_OFFSET), buffer.getInt(offset + NANOS_OFFSET)),
+                buffer.getInt(offset + LIKES_OFFSET), comments);
+    }
+}
@@ -0,0 +1,129 @@
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// In-memory post storage with a primary-key index, a per-author index, a time-ordered index, a
+// full-text index and time partitions for range queries.
+// All indexes are concurrent, so readers never block writers; a post may briefly be visible in one
+// index before the others while it is being added or removed.
+public class PostStore {
+    // Posts are listed oldest first; the ID breaks ties between posts created in the same instant
+    static final Comparator<Post> TIME_ORDER = Comparator.comparing(Post::getTimestamp).thenComparingInt(Post::getId);
+
+    private final Map<Integer, Post> byId = new ConcurrentHashMap<>();
+    private final NavigableSet<Post> byTime = new ConcurrentSkipListSet<>(TIME_ORDER);
+    private final Map<String, NavigableSet<Post>> byAuthor = new ConcurrentHashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final TimePartitionIndex partitions = new TimePartitionIndex(
+            Long.getLong("search.partitionMillis", 60 * 60 * 1000L)); // Hourly by default
+
+    public void add(Post post) {
+        Post previous = byId.put(post.getId(), post);
+        if (previous != null) {
+            unindex(previous);
+        }
+        byTime.add(post);
+        byAuthor.computeIfAbsent(post.getUsername(), k -> new ConcurrentSkipListSet<>(TIME_ORDER)).add(post);
+        searchIndex.add(post);
+        partitions.add(post);
+    }
+
+    public Post get(int id) {
+        return byId.get(id);
+    }
+
+    public Post remove(int id) {
+        Post post = byId.remove(id);
+        if (post != null) {
+            unindex(post);
+        }
+        return post;
+    }
+
+    // All posts, oldest first
+    public List<Post> listByTime() {
+        return new ArrayList<>(byTime);
+    }
+
+
+    // All posts, newest first, starting just after the given cursor post (null for the newest)
+    public Iterator<Post> newestFirst(Post after) {
+        NavigableSet<Post> older = after == null ? byTime : byTime.headSet(after, false);
+        return older.descendingIterator();
+    }
+
+    // Posts matching the keyword terms, author (case-insensitive) and time range [startTime, endTime], any of
+    // which may be null, newest first and starting just after the cursor post. Keyword queries go through the
+    // inverted index; author and time queries only open the overlapping time partitions.
+    public Iterator<Post> search(String keyword, String username, Instant startTime, Instant endTime, Post after) {
+        if (keyword == null) {
+            if (username == null && startTime == null && endTime == null) {
+                return newestFirst(after);
+            }
+            return partitions.range(startTime, endTime, username, after);
+        }
+
+        NavigableSet<Post> matches = new TreeSet<>(TIME_ORDER.reversed());
+        for (Integer id : searchIndex.match(keyword, username)) {
+            Post post = byId.get(id);
+            if (post != null && (startTime == null || !post.getTimestamp().isBefore(startTime))
+                    && (endTime == null || !post.getTimestamp().isAfter(endTime))) {
+                matches.add(post);
+            }
+        }
+        return (after == null ? matches : matches.tailSet(after, false)).iterator();
+    }
+
+    // Turn time partitions that ended before the cutoff into compact read-only arrays
+    public int compactPartitionsBefore(Instant cutoff) {
+        return partitions.compactBefore(cutoff);
+    }
+
+    // Up to limit of an author's posts, newest first, starting just after the given cursor post
+    public List<Post> recentByAuthor(String username, Post after, int limit) {
+        List<Post> recent = new ArrayList<>();
+        NavigableSet<Post> authored = byAuthor.get(username);
+        if (authored != null) {
+            NavigableSet<Post> older = after == null ? authored : authored.headSet(after, false);
+            for (Post post : older.descendingSet()) {
+                if (recent.size() >= limit) {
+                    break;
+                }
+                recent.add(post);
+            }
+        }
+        return recent;
+    }
+
+    // Bulk replacement is not atomic with respect to concurrent readers
+    public void replaceAll(Collection<Post> posts) {
+        byId.clear();
+        byTime.clear();
+        byAuthor.clear();
+        searchIndex.clear();
+        partitions.clear();
+        for (Post post : posts) {
+            add(post);
+        }
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private void unindex(Post post) {
+        byTime.remove(post);
+        searchIndex.remove(post);
+        partitions.remove(post);
+        NavigableSet<Post> authored = byAuthor.get(post.getUsername());
+        if (authored != null) {
+            authored.remove(post); // Empty author sets are kept, removing them would race with add()
+        }
+    }
+
+    @Override
+    public String toString() {
+        return byTime.toString();
+    }
+}
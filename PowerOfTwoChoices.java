@@ -0,0 +1,25 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+// Sample two servers at random and take the less loaded one. O(1), and unlike a global minimum it does not
+// send a burst of logins to the same server before its load report catches up.
+public class PowerOfTwoChoices implements LoadBalancingStrategy {
+    @Override
+    public int choose(int[] ports, IntUnaryOperator load, String key) {
+        if (ports.length == 0) {
+            return 0;
+        }
+        if (ports.length == 1) {
+            return ports[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(ports.length);
+        int second = random.nextInt(ports.length - 1);
+        if (second >= first) {
+            second++; // Two distinct servers
+        }
+        int a = ports[first];
+        int b = ports[second];
+        return load.applyAsInt(b) < load.applyAsInt(a) ? b : a;
+    }
+}
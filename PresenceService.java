@@ -0,0 +1,188 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Who is online, sharded by username hash. Lookups by username or client are lock-free map reads;
+// logins, logouts and expiry lock only the user's shard. Every session has a time-to-live that client
+// heartbeats extend, so sessions of clients that vanished without logging out expire on their own.
+public class PresenceService {
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long ttlMillis;
+    private final Map<MessagingClient, Session> byClient = new ConcurrentHashMap<>(); // Reverse index, written under the user's shard lock
+
+    public PresenceService(int shardCount, long ttlMillis) {
+        int size = Integer.highestOneBit(Math.max(shardCount - 1, 1)) << 1; // Next power of two
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = size - 1;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static PresenceService fromSystemProperties() {
+        return new PresenceService(Integer.getInteger("presence.shards", 64), Long.getLong("presence.ttlMs", 60000));
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    // Start or replace the user's session; a previous session of the same user is dropped, and a client left
+    // with no session at all is handed to offline
+    public void login(String username, MessagingClient client, Consumer<MessagingClient> offline) {
+        Shard shard = shard(username);
+        Session session = new Session(username, client, System.currentTimeMillis() + ttlMillis);
+        Session displaced;
+        synchronized (shard) {
+            Session previous = shard.sessions.put(username, session);
+            if (previous != null && byClient.remove(previous.client, previous) && !previous.client.equals(client)) {
+                offline.accept(previous.client);
+            }
+            displaced = byClient.put(client, session);
+        }
+        if (displaced != null && !displaced.username.equals(username)) {
+            // The same client logged in as someone else; end that other session too. Only after releasing this
+            // shard, holding two shard locks at once could deadlock with a login going the other way.
+            Shard other = shard(displaced.username);
+            synchronized (other) {
+                other.sessions.remove(displaced.username, displaced);
+            }
+        }
+    }
+
+    // False if there was no live session; a client left with no session at all is handed to offline
+    public boolean logout(String username, Consumer<MessagingClient> offline) {
+        Shard shard = shard(username);
+        synchronized (shard) {
+            Session session = shard.sessions.remove(username);
+            if (session == null) {
+                return false;
+            }
+            if (byClient.remove(session.client, session)) {
+                offline.accept(session.client);
+            }
+            return !session.isExpired(System.currentTimeMillis());
+        }
+    }
+
+    // Extend the session; false if the user has no live session and should log in again
+    public boolean heartbeat(String username) {
+        Shard shard = shard(username);
+        synchronized (shard) { // Same lock as expire(), so a session is never extended after it was swept
+            Session session = shard.sessions.get(username);
+            long now = System.currentTimeMillis();
+            if (session == null || session.isExpired(now)) {
+                return false;
+            }
+            session.expiresAtMillis = now + ttlMillis;
+            return true;
+        }
+    }
+
+    // The user's client, null if offline
+    public MessagingClient client(String username) {
+        Session session = shard(username).sessions.get(username);
+        return session == null || session.isExpired(System.currentTimeMillis()) ? null : session.client;
+    }
+
+    // The client's username, null if it has no live session
+    public String username(MessagingClient client) {
+        Session session = byClient.get(client);
+        return session == null || session.isExpired(System.currentTimeMillis()) ? null : session.username;
+    }
+
+    // The online users among the given names, with their clients
+    public Map<String, MessagingClient> online(Collection<String> usernames) {
+        long now = System.currentTimeMillis();
+        Map<String, MessagingClient> online = new HashMap<>();
+        for (String username : usernames) {
+            Session session = shard(username).sessions.get(username);
+            if (session != null && !session.isExpired(now)) {
+                online.put(username, session.client);
+            }
+        }
+        return online;
+    }
+
+    // Client -> username for every live session
+    public Map<MessagingClient, String> all() {
+        long now = System.currentTimeMillis();
+        Map<MessagingClient, String> all = new HashMap<>();
+        for (Session session : byClient.values()) {
+            if (!session.isExpired(now)) {
+                all.put(session.client, session.username);
+            }
+        }
+        return all;
+    }
+
+    public List<String> usernames() {
+        return new ArrayList<>(all().values());
+    }
+
+    // Drop sessions whose time-to-live has passed, one shard at a time; returns how many were dropped. Clients
+    // left with no session at all are handed to offline.
+    public int expire(long nowMillis, Consumer<MessagingClient> offline) {
+        int expired = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Session> iterator = shard.sessions.values().iterator();
+                while (iterator.hasNext()) {
+                    Session session = iterator.next();
+                    if (session.isExpired(nowMillis)) {
+                        iterator.remove();
+                        if (byClient.remove(session.client, session)) {
+                            offline.accept(session.client);
+                        }
+                        expired++;
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    public void replaceAll(Map<MessagingClient, String> sessions) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.sessions.clear();
+            }
+        }
+        byClient.clear();
+        for (Map.Entry<MessagingClient, String> entry : sessions.entrySet()) {
+            login(entry.getValue(), entry.getKey(), client -> { }); // The caller replaces the client list itself
+        }
+    }
+
+    @Override
+    public String toString() {
+        return all().toString();
+    }
+
+    private Shard shard(String username) {
+        int hash = username.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    private static class Shard {
+        final Map<String, Session> sessions = new ConcurrentHashMap<>(); // Read without the lock, written under it
+    }
+
+    private static class Session {
+        final String username;
+        final MessagingClient client;
+        volatile long expiresAtMillis;
+
+        Session(String username, MessagingClient client, long expiresAtMillis) {
+            this.username = username;
+            this.client = client;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+}
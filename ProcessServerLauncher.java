@@ -0,0 +1,47 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// One JVM per messaging server, started with this JVM's java binary and class path. The Process handle is
+// kept, so stopping a server is a portable destroy() instead of looking the PID up by port.
+public class ProcessServerLauncher implements ServerLauncher {
+    private final Map<Integer, Process> processes = new ConcurrentHashMap<>();
+
+    @Override
+    public void launch(int port) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "MessagingServerImpl", String.valueOf(port))
+                .inheritIO()
+                .start();
+        processes.put(port, process);
+        System.out.println("Started server process " + process.pid() + " on port " + port);
+    }
+
+    @Override
+    public void stop(int port) {
+        Process process = processes.remove(port);
+        if (process == null) {
+            return;
+        }
+        process.destroy(); // Lets the server's shutdown hooks run
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Stopped server process on port " + port);
+    }
+
+    @Override
+    public void stopAll() {
+        for (int port : new ArrayList<>(processes.keySet())) {
+            stop(port);
+        }
+    }
+}
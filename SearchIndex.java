@@ -0,0 +1,127 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Inverted index over post content: term -> sorted posting list of post IDs, plus an author posting list.
+// Every query term is a prefix (so "hel" matches "hello"), and several terms are ANDed together.
+public class SearchIndex {
+    private static final Postings EMPTY = new Postings();
+
+    private final NavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final Map<String, Postings> authors = new ConcurrentHashMap<>(); // lowercase username
+
+    public void add(Post post) {
+        for (String term : tokenize(post.getContent())) {
+            terms.computeIfAbsent(term, k -> new Postings()).add(post.getId());
+        }
+        authors.computeIfAbsent(post.getUsername().toLowerCase(Locale.ROOT), k -> new Postings()).add(post.getId());
+    }
+
+    public void remove(Post post) {
+        for (String term : tokenize(post.getContent())) {
+            Postings postings = terms.get(term);
+            if (postings != null) {
+                postings.remove(post.getId()); // Empty lists are kept, removing them would race with add()
+            }
+        }
+        Postings authored = authors.get(post.getUsername().toLowerCase(Locale.ROOT));
+        if (authored != null) {
+            authored.remove(post.getId());
+        }
+    }
+
+    public void clear() {
+        terms.clear();
+        authors.clear();
+    }
+
+    // IDs of posts matching every keyword term and the author, or null if neither filter is given
+    public NavigableSet<Integer> match(String keyword, String username) {
+        List<Postings> postingLists = new ArrayList<>();
+        if (keyword != null) {
+            Set<String> queryTerms = tokenize(keyword);
+            if (queryTerms.isEmpty()) {
+                return new TreeSet<>(); // Nothing searchable in the keyword
+            }
+            for (String term : queryTerms) {
+                postingLists.add(prefixPostings(term));
+            }
+        }
+        if (username != null) {
+            postingLists.add(authors.getOrDefault(username.toLowerCase(Locale.ROOT), EMPTY));
+        }
+        return postingLists.isEmpty() ? null : intersect(postingLists);
+    }
+
+    // Union of the posting lists of every indexed term starting with the prefix
+    private Postings prefixPostings(String prefix) {
+        Collection<Postings> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        Iterator<Postings> iterator = range.iterator();
+        if (!iterator.hasNext()) {
+            return EMPTY;
+        }
+        Postings first = iterator.next();
+        if (!iterator.hasNext()) {
+            return first; // Exact term, no copy needed
+        }
+        Postings union = new Postings();
+        for (Postings postings : range) {
+            for (Integer id : postings.ids) {
+                union.add(id);
+            }
+        }
+        return union;
+    }
+
+    // Walk the shortest list and probe the others, so the cost follows the smallest result
+    private static NavigableSet<Integer> intersect(List<Postings> postingLists) {
+        postingLists.sort(Comparator.comparingInt(postings -> postings.size.get()));
+        NavigableSet<Integer> result = new TreeSet<>();
+        outer:
+        for (Integer id : postingLists.get(0).ids) {
+            for (int i = 1; i < postingLists.size(); i++) {
+                if (!postingLists.get(i).ids.contains(id)) {
+                    continue outer;
+                }
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    // Lowercase runs of letters and digits, each term once
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Sorted post IDs with a size counter, since a skip list's size() walks the whole list
+    private static class Postings {
+        private final NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        void add(int id) {
+            if (ids.add(id)) {
+                size.incrementAndGet();
+            }
+        }
+
+        void remove(int id) {
+            if (ids.remove(id)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+// Starts and stops messaging servers for the load balancer. Chosen with -Dlb.serverMode:
+// "embedded" hosts servers inside the load balancer's JVM, "process" starts one JVM per server.
+public interface ServerLauncher {
+    // Start a messaging server bound as "MessagingService" in a registry on the port
+    void launch(int port) throws Exception;
+
+    // Stop the server on the port; does nothing if this launcher did not start it
+    void stop(int port);
+
+    void stopAll();
+
+    static ServerLauncher named(String mode) {
+        switch (mode) {
+            case "embedded":
+                return new EmbeddedServerLauncher();
+            case "process":
+                return new ProcessServerLauncher();
+            default:
+                throw new IllegalArgumentException("Unknown server mode: " + mode);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.Serializable;
+
+// Point-in-time load report from one messaging server, sent to the load balancer on a schedule
+public class ServerMetrics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int port;
+    private final long reportedAtMillis;
+    private final int activeSessions;
+    private final int inFlightCalls;
+    private final double requestsPerSecond;
+    private final double p99LatencyMillis;
+    private final long heapUsedBytes;
+    private final long heapMaxBytes;
+    private final int queueDepth;
+    private final int authQueueDepth;   // Password hashes running or waiting
+    private final double avgHashMillis; // Cost of one password hash over the last interval, 0 if there were none
+    private final long authRejected;    // Logins and registrations turned away as busy over the last interval
+
+    public ServerMetrics(int port, long reportedAtMillis, int activeSessions, int inFlightCalls, double requestsPerSecond,
+                         double p99LatencyMillis, long heapUsedBytes, long heapMaxBytes, int queueDepth,
+                         int authQueueDepth, double avgHashMillis, long authRejected) {
+        this.port = port;
+        this.reportedAtMillis = reportedAtMillis;
+        this.activeSessions = activeSessions;
+        this.inFlightCalls = inFlightCalls;
+        this.requestsPerSecond = requestsPerSecond;
+        this.p99LatencyMillis = p99LatencyMillis;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapMaxBytes = heapMaxBytes;
+        this.queueDepth = queueDepth;
+        this.authQueueDepth = authQueueDepth;
+        this.avgHashMillis = avgHashMillis;
+        this.authRejected = authRejected;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getReportedAtMillis() {
+        return reportedAtMillis;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions;
+    }
+
+    public int getInFlightCalls() {
+        return inFlightCalls;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public double getP99LatencyMillis() {
+        return p99LatencyMillis;
+    }
+
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+
+    public long getHeapMaxBytes() {
+        return heapMaxBytes;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getAuthQueueDepth() {
+        return authQueueDepth;
+    }
+
+    public double getAvgHashMillis() {
+        return avgHashMillis;
+    }
+
+    public long getAuthRejected() {
+        return authRejected;
+    }
+
+    public double getHeapUsage() {
+        return heapMaxBytes <= 0 ? 0 : (double) heapUsedBytes / heapMaxBytes;
+    }
+
+    // Single routing and scaling signal, in "session equivalents": sessions, plus calls waiting to finish,
+    // plus backed-up queue work, scaled up when the server is slow or short of heap
+    public int loadScore() {
+        double score = activeSessions + inFlightCalls * 2.0 + queueDepth / 100.0;
+        if (p99LatencyMillis > 250) {
+            score *= 1.5;
+        }
+        if (getHeapUsage() > 0.9) {
+            score *= 2;
+        }
+        return (int) Math.ceil(score);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServerMetrics{port=%d, sessions=%d, inFlight=%d, rps=%.1f, p99=%.1fms, heap=%d%%, queue=%d, auth=%d@%.1fms/%d rejected, score=%d}",
+                port, activeSessions, inFlightCalls, requestsPerSecond, p99LatencyMillis,
+                Math.round(getHeapUsage() * 100), queueDepth, authQueueDepth, avgHashMillis, authRejected, loadScore());
+    }
+}
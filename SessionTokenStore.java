@@ -0,0 +1,75 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Session tokens handed out after a password check, so later authentication is a map lookup instead of
+// another slow hash. Only a SHA-256 of each token is kept, so the store itself never holds a usable token.
+// Tokens live in memory and expire after the time-to-live; after a database restart users log in again.
+public class SessionTokenStore {
+    private static final int TOKEN_BYTES = 32;
+
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // token hash -> session
+
+    public SessionTokenStore(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public String create(String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(digest(token), new Session(username, System.currentTimeMillis() + ttlMillis));
+        return token;
+    }
+
+    // The token's user, null if the token is unknown or expired
+    public String validate(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(digest(token));
+        return session == null || session.expiresAtMillis <= System.currentTimeMillis() ? null : session.username;
+    }
+
+    public boolean revoke(String token) {
+        return token != null && sessions.remove(digest(token)) != null;
+    }
+
+    public int expire(long nowMillis) {
+        int expired = 0;
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtMillis <= nowMillis) {
+                iterator.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Session {
+        final String username;
+        final long expiresAtMillis;
+
+        Session(String username, long expiresAtMillis) {
+            this.username = username;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The client end of the socket transport: a MessagingServer proxy whose calls are request frames on one
+// persistent connection. Callers on different threads pipeline freely; each waits only for the response
+// carrying its own request id. A reader thread completes responses and hands push frames to the local
+// MessagingClient, in the order the server sent them.
+public class SocketTransportClient {
+    private static final Method[] SERVER_METHODS = FramedConnection.methodTable(MessagingServer.class);
+    private static final Method[] CLIENT_METHODS = FramedConnection.methodTable(MessagingClient.class);
+    private static final Map<Method, Integer> SERVER_METHOD_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < SERVER_METHODS.length; i++) {
+            SERVER_METHOD_INDEX.put(SERVER_METHODS[i], i);
+        }
+    }
+
+    private final FramedConnection connection;
+    private final MessagingClient callbacks;
+    private final Map<Integer, CompletableFuture<FramedConnection.Frame>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final MessagingServer server;
+    private volatile boolean closed;
+
+    public SocketTransportClient(String host, int port, MessagingClient callbacks) throws IOException {
+        this.connection = new FramedConnection(new Socket(host, port));
+        this.callbacks = callbacks;
+        this.server = (MessagingServer) Proxy.newProxyInstance(MessagingServer.class.getClassLoader(),
+                new Class<?>[]{MessagingServer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "SocketTransportClient[" + host + ":" + port + "]";
+                        default:
+                            return call(method, args);
+                    }
+                });
+
+        Thread reader = new Thread(this::readLoop, "socket-transport-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public MessagingServer getServer() {
+        return server;
+    }
+
+    public void close() {
+        connection.close();
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        int methodIndex = SERVER_METHOD_INDEX.get(method);
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<FramedConnection.Frame> response = new CompletableFuture<>();
+        pending.put(requestId, response);
+        FramedConnection.Frame frame;
+        try {
+            connection.write(FramedConnection.REQUEST, requestId, FramedConnection.encodeCall(methodIndex, args == null ? new Object[0] : args));
+            if (closed && !response.isDone()) {
+                throw new ConnectException("Socket transport connection closed"); // The reader is gone and will not answer
+            }
+            frame = response.get();
+        } catch (IOException e) {
+            throw new ConnectException("Socket transport call failed", e);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            pending.remove(requestId);
+        }
+        Object value;
+        try {
+            value = FramedConnection.decodeValue(frame.payload);
+        } catch (IOException e) {
+            throw new UnmarshalException("Could not read the server's reply", e); // Includes types the filter rejects
+        }
+        if (frame.type == FramedConnection.ERROR) {
+            Throwable error = (Throwable) value;
+            for (Class<?> declared : method.getExceptionTypes()) {
+                if (declared.isInstance(error)) {
+                    throw error;
+                }
+            }
+            if (error instanceof RuntimeException || error instanceof Error) {
+                throw error;
+            }
+            throw new RemoteException("Server call failed", error);
+        }
+        return value;
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                FramedConnection.Frame frame = connection.read();
+                if (frame.type == FramedConnection.PUSH) {
+                    dispatchPush(frame);
+                } else {
+                    CompletableFuture<FramedConnection.Frame> response = pending.get(frame.requestId);
+                    if (response != null) {
+                        response.complete(frame);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            closed = true;
+            ConnectException error = new ConnectException("Socket transport connection closed", e);
+            for (CompletableFuture<FramedConnection.Frame> response : pending.values()) {
+                response.completeExceptionally(error);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void dispatchPush(FramedConnection.Frame frame) {
+        try {
+            int[] methodIndex = new int[1];
+            Object[] args = FramedConnection.decodeCall(frame.payload, callbacks, methodIndex);
+            CLIENT_METHODS[methodIndex[0]].invoke(callbacks, args);
+        } catch (InvocationTargetException e) {
+            System.err.println("Push callback failed: " + e.getCause());
+        } catch (Exception e) {
+            System.err.println("Bad push frame: " + e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Serves MessagingServer calls over framed sockets, next to the RMI registry. Each connection has one reader
+// and runs every request on its own (virtual) thread, so pipelined requests from a client execute
+// concurrently and are answered as they finish. The client's callbacks come back as push frames on the same
+// socket: the connection exports a small MessagingClient bridge, and that stub is what the rest of the
+// system (presence, chatrooms, delivery) sees as the client. Connections are not authenticated, so the
+// listener binds to the RMI hostname when one is configured and to loopback otherwise.
+public class SocketTransportServer {
+    private static final Method[] SERVER_METHODS = FramedConnection.methodTable(MessagingServer.class);
+    private static final Method[] CLIENT_METHODS = FramedConnection.methodTable(MessagingClient.class);
+
+    private final MessagingServer target;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = VirtualThreads.newExecutor("socket-transport");
+
+    public SocketTransportServer(MessagingServer target, int port) throws IOException {
+        this.target = target;
+        String hostname = System.getProperty("java.rmi.server.hostname");
+        InetAddress address = hostname == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(hostname);
+        this.serverSocket = new ServerSocket(port, 50, address);
+        Thread acceptor = new Thread(this::acceptLoop, "socket-transport-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Socket transport accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        FramedConnection connection;
+        ClientBridge bridge;
+        try {
+            connection = new FramedConnection(socket);
+            bridge = new ClientBridge(connection);
+        } catch (IOException e) {
+            System.err.println("Socket transport connection failed: " + e.getMessage());
+            return;
+        }
+        try {
+            while (true) {
+                FramedConnection.Frame frame = connection.read();
+                if (frame.type == FramedConnection.REQUEST) {
+                    executor.execute(() -> handle(connection, bridge, frame));
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            connection.close();
+            bridge.unexport();
+        }
+    }
+
+    private void handle(FramedConnection connection, ClientBridge bridge, FramedConnection.Frame frame) {
+        byte type;
+        byte[] payload;
+        try {
+            int[] methodIndex = new int[1];
+            Object[] args = FramedConnection.decodeCall(frame.payload, bridge, methodIndex);
+            Object result = SERVER_METHODS[methodIndex[0]].invoke(target, args);
+            type = FramedConnection.RESPONSE;
+            payload = FramedConnection.encodeValue(result);
+        } catch (InvocationTargetException e) {
+            type = FramedConnection.ERROR;
+            payload = encodeError(e.getCause());
+        } catch (Exception e) {
+            type = FramedConnection.ERROR;
+            payload = encodeError(e);
+        }
+        try {
+            connection.write(type, frame.requestId, payload);
+        } catch (IOException e) {
+            connection.close(); // The reader sees the closed socket and cleans up
+        }
+    }
+
+    // The error itself if the client's filter will accept it, otherwise just its description
+    private static byte[] encodeError(Throwable error) {
+        try {
+            byte[] payload = FramedConnection.encodeValue(error);
+            FramedConnection.decodeValue(payload);
+            return payload;
+        } catch (IOException e) {
+            try {
+                return FramedConnection.encodeValue(new RemoteException(String.valueOf(error)));
+            } catch (IOException impossible) {
+                return new byte[0];
+            }
+        }
+    }
+
+    // The client as the rest of the system sees it: an RMI object whose calls become push frames
+    private static class ClientBridge extends UnicastRemoteObject implements MessagingClient {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FramedConnection connection;
+
+        ClientBridge(FramedConnection connection) throws RemoteException {
+            super();
+            this.connection = connection;
+        }
+
+        void unexport() {
+            try {
+                UnicastRemoteObject.unexportObject(this, true);
+            } catch (NoSuchObjectException e) {
+                // Already unexported
+            }
+        }
+
+        private void push(String methodName, Object... args) throws RemoteException {
+            if (connection.isClosed()) {
+                throw new ConnectException("Client connection closed");
+            }
+            try {
+                connection.write(FramedConnection.PUSH, 0, FramedConnection.encodeCall(indexOf(methodName), args));
+            } catch (IOException e) {
+                connection.close();
+                throw new ConnectException("Push to client failed", e);
+            }
+        }
+
+        private static int indexOf(String methodName) {
+            for (int i = 0; i < CLIENT_METHODS.length; i++) {
+                if (CLIENT_METHODS[i].getName().equals(methodName)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException(methodName);
+        }
+
+        @Override
+        public void receiveMessage(String message) throws RemoteException {
+            push("receiveMessage", message);
+        }
+
+        @Override
+        public void receiveChatMessage(String roomName, String message) throws RemoteException {
+            push("receiveChatMessage", roomName, message);
+        }
+
+        @Override
+        public boolean connectToServer(int port) throws RemoteException {
+            throw new RemoteException("Not supported over the socket transport");
+        }
+
+        @Override
+        public void notify(String notification) throws RemoteException {
+            push("notify", notification);
+        }
+
+        @Override
+        public void receiveBatch(List<Event> events) throws RemoteException {
+            push("receiveBatch", events);
+        }
+    }
+}
@@ -1,17 +1,24 @@
 import java.time.Instant;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 public class Story implements Serializable {
+    private static final long serialVersionUID = 6168922223516356567L; // Pinned so snapshots written before WireFormat still load
     private final String username;
     private final String content;
     private final Instant expiryTime;
     private final int id;
 
     public Story(int id, String username, String content, int durationInSeconds) {
+        this(id, username, content, Instant.now().plusSeconds(durationInSeconds));
+    }
+
+    // Used when restoring a story from the write-ahead log
+    public Story(int id, String username, String content, Instant expiryTime) {
         this.id = id;
         this.username = username;
         this.content = content;
-        this.expiryTime = Instant.now().plusSeconds(durationInSeconds);
+        this.expiryTime = expiryTime;
     }
 
     public String getUsername() {
@@ -24,7 +31,21 @@ public class Story implements Serializable {
 
     public int getId() {return id;}
 
+    public Instant getExpiryTime() {
+        return expiryTime;
+    }
+
     public boolean isExpired() {
-        return Instant.now().isAfter(expiryTime);
+        return isExpired(Instant.now());
+    }
+
+    // Lets callers checking many stories read the clock once
+    public boolean isExpired(Instant now) {
+        return now.isAfter(expiryTime);
+    }
+
+    // Sent as a compact WireFormat.StoryForm
+    private Object writeReplace() throws ObjectStreamException {
+        return new WireFormat.StoryForm(this);
     }
 }
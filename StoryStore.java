@@ -0,0 +1,95 @@
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Stories indexed by ID and kept in expiry order, so the next story to expire is always at the head.
+// Eviction only touches expired stories, and the live view is a single range of the expiry index.
+// A per-author copy of the index lets a reader fetch the stories of just the people they follow.
+public class StoryStore {
+    private static final Comparator<Story> EXPIRY_ORDER = Comparator.comparing(Story::getExpiryTime).thenComparingInt(Story::getId);
+
+    private final Map<Integer, Story> byId = new ConcurrentHashMap<>();
+    private final NavigableSet<Story> byExpiry = new ConcurrentSkipListSet<>(EXPIRY_ORDER);
+    private final Map<String, NavigableSet<Story>> byAuthor = new ConcurrentHashMap<>();
+
+    public void add(Story story) {
+        Story previous = byId.put(story.getId(), story);
+        if (previous != null) {
+            byExpiry.remove(previous);
+            removeFromAuthor(previous);
+        }
+        byExpiry.add(story);
+        byAuthor.compute(story.getUsername(), (author, own) -> { // Atomic with the removal of an emptied set
+            NavigableSet<Story> stories = own == null ? new ConcurrentSkipListSet<>(EXPIRY_ORDER) : own;
+            stories.add(story);
+            return stories;
+        });
+    }
+
+    // The story if it exists and has not expired at the given instant
+    public Story get(int id, Instant now) {
+        Story story = byId.get(id);
+        return story == null || story.isExpired(now) ? null : story;
+    }
+
+    // Stories that are still visible at the given instant, soonest to expire first
+    public List<Story> live(Instant now) {
+        return new ArrayList<>(byExpiry.tailSet(new Story(Integer.MIN_VALUE, null, null, now), true));
+    }
+
+    // Up to limit live stories by the given authors, soonest to expire first
+    public List<Story> liveBy(Collection<String> authors, Instant now, int limit) {
+        Story firstLive = new Story(Integer.MIN_VALUE, null, null, now);
+        List<Story> found = new ArrayList<>();
+        for (String author : authors) {
+            NavigableSet<Story> own = byAuthor.get(author);
+            if (own == null) {
+                continue;
+            }
+            Iterator<Story> live = own.tailSet(firstLive, true).iterator();
+            for (int taken = 0; taken < limit && live.hasNext(); taken++) {
+                found.add(live.next());
+            }
+        }
+        found.sort(EXPIRY_ORDER);
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    // Drop stories that expired before the given instant; returns how many were evicted
+    public int evictExpired(Instant now) {
+        int evicted = 0;
+        for (Story story : byExpiry) { // Soonest to expire first; live stories are never taken out, so readers always see them
+            if (!story.isExpired(now)) {
+                break;
+            }
+            if (byExpiry.remove(story)) {
+                byId.remove(story.getId(), story);
+                removeFromAuthor(story);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public void replaceAll(Collection<Story> stories) {
+        byId.clear();
+        byExpiry.clear();
+        byAuthor.clear();
+        for (Story story : stories) {
+            add(story);
+        }
+    }
+
+    private void removeFromAuthor(Story story) {
+        byAuthor.computeIfPresent(story.getUsername(), (author, own) -> {
+            own.remove(story);
+            return own.isEmpty() ? null : own; // Drop authors with no stories left
+        });
+    }
+
+    @Override
+    public String toString() {
+        return byExpiry.toString();
+    }
+}
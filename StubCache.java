@@ -0,0 +1,81 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// RMI stubs looked up once per (host, port, binding name) and reused, so a remote call costs one round trip
+// instead of a registry lookup plus the call. A stub is dropped when a call through it shows the remote
+// object is gone, and the next use looks it up again.
+public class StubCache {
+    private final Map<String, Remote> stubs = new ConcurrentHashMap<>();
+
+    // The cached stub, looked up on first use or after invalidation
+    public <T extends Remote> T get(String host, int port, String name, Class<T> type) throws RemoteException, NotBoundException {
+        String key = key(host, port, name);
+        Remote stub = stubs.get(key);
+        if (stub == null) {
+            // Looked up outside any lock; if two callers race, both stubs work and the first one is kept
+            Remote found = LocateRegistry.getRegistry(host, port).lookup(name);
+            stub = stubs.putIfAbsent(key, found);
+            if (stub == null) {
+                stub = found;
+            }
+        }
+        return type.cast(stub);
+    }
+
+    public void invalidate(String host, int port, String name) {
+        stubs.remove(key(host, port, name));
+    }
+
+    // Drop every stub bound on a registry, e.g. when that server is removed
+    public void invalidate(String host, int port) {
+        String prefix = host + ":" + port + "/";
+        stubs.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    // A proxy that calls through the cached stub. If the call fails because the remote object could not be
+    // reached or is no longer exported, the stub is invalidated and the call is retried once on a fresh lookup.
+    // Those two failures happen before the remote method runs, so retrying never executes a call twice.
+    public <T extends Remote> T proxy(String host, int port, String name, Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return "StubCache.proxy[" + key(host, port, name) + "]";
+                }
+            }
+            for (int attempt = 0; ; attempt++) {
+                T stub;
+                try {
+                    stub = get(host, port, name, type);
+                } catch (NotBoundException e) {
+                    throw new RemoteException(name + " is not bound on " + host + ":" + port, e);
+                }
+                try {
+                    return method.invoke(stub, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    if (!(cause instanceof ConnectException || cause instanceof NoSuchObjectException)) {
+                        throw cause;
+                    }
+                    stubs.remove(key(host, port, name), stub);
+                    if (attempt > 0) {
+                        throw cause;
+                    }
+                }
+            }
+        }));
+    }
+
+    private static String key(String host, int port, String name) {
+        return host + ":" + port + "/" + name;
+    }
+}
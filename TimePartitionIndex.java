@@ -0,0 +1,229 @@
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Posts bucketed into fixed-width time partitions, each with a per-author skip index, so a time- or
+// author-bounded query only opens the partitions it overlaps and skips those the author never posted in.
+// Partitions older than a cutoff can be compacted into immutable sorted arrays ("cold").
+public class TimePartitionIndex {
+    private final long partitionMillis;
+    private final NavigableMap<Long, Partition> partitions = new ConcurrentSkipListMap<>(); // partition start -> partition
+
+    public TimePartitionIndex(long partitionMillis) {
+        this.partitionMillis = partitionMillis;
+    }
+
+    public void add(Post post) {
+        partitions.computeIfAbsent(partitionOf(post.getTimestamp()), k -> new Partition()).add(post);
+    }
+
+    public void remove(Post post) {
+        Partition partition = partitions.get(partitionOf(post.getTimestamp()));
+        if (partition != null) {
+            partition.remove(post);
+        }
+    }
+
+    public void clear() {
+        partitions.clear();
+    }
+
+    // Compact every hot partition that ends before the cutoff; returns how many were compacted
+    public int compactBefore(Instant cutoff) {
+        int compacted = 0;
+        for (Partition partition : partitions.headMap(partitionOf(cutoff), false).values()) {
+            if (partition.compact()) {
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    // Posts within [start, end] (either may be null), by the author if given (case-insensitive),
+    // newest first and strictly after the cursor post
+    public Iterator<Post> range(Instant start, Instant end, String author, Post after) {
+        Bounds bounds = new Bounds(start, end, after);
+        if (bounds.isEmpty()) {
+            return Collections.emptyIterator(); // Start after end, or a cursor before the start
+        }
+        String authorKey = author == null ? null : author.toLowerCase(Locale.ROOT);
+
+        NavigableMap<Long, Partition> overlapping = partitions;
+        if (bounds.upper != null) {
+            overlapping = overlapping.headMap(partitionOf(bounds.upper.getTimestamp()), true);
+        }
+        if (bounds.lower != null) {
+            overlapping = overlapping.tailMap(partitionOf(bounds.lower.getTimestamp()), true);
+        }
+        Iterator<Partition> partitionIterator = overlapping.descendingMap().values().iterator();
+
+        return new Iterator<Post>() {
+            private Iterator<Post> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && partitionIterator.hasNext()) {
+                    current = partitionIterator.next().newestFirst(authorKey, bounds);
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Post next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private long partitionOf(Instant timestamp) {
+        return Math.floorDiv(timestamp.toEpochMilli(), partitionMillis) * partitionMillis;
+    }
+
+    // Query bounds as probe posts in PostStore.TIME_ORDER: lower is inclusive, upper is inclusive unless it is the cursor
+    private static class Bounds {
+        final Post lower;
+        final Post upper;
+        final boolean upperInclusive;
+
+        Bounds(Instant start, Instant end, Post after) {
+            this.lower = start == null ? null : new Post(Integer.MIN_VALUE, null, null, start);
+            Post endProbe = end == null ? null : new Post(Integer.MAX_VALUE, null, null, end);
+            if (after != null && (endProbe == null || PostStore.TIME_ORDER.compare(after, endProbe) <= 0)) {
+                this.upper = after;
+                this.upperInclusive = false;
+            } else {
+                this.upper = endProbe;
+                this.upperInclusive = true;
+            }
+        }
+
+        // Whether no post can fall between the bounds; sub-views would reject the inverted range
+        boolean isEmpty() {
+            return lower != null && upper != null && PostStore.TIME_ORDER.compare(lower, upper) > 0;
+        }
+    }
+
+    private static class Partition {
+        private static final Post[] NO_POSTS = new Post[0];
+
+        // Hot: concurrent sorted sets. Cold: immutable arrays in TIME_ORDER, replaced wholesale on change.
+        private volatile NavigableSet<Post> hotPosts = new ConcurrentSkipListSet<>(PostStore.TIME_ORDER);
+        private volatile Map<String, NavigableSet<Post>> hotAuthors = new ConcurrentHashMap<>();
+        private volatile Post[] coldPosts;
+        private volatile Map<String, Post[]> coldAuthors;
+
+        synchronized void add(Post post) {
+            if (coldPosts == null) {
+                hotPosts.add(post);
+                hotAuthors.computeIfAbsent(authorKey(post), k -> new ConcurrentSkipListSet<>(PostStore.TIME_ORDER)).add(post);
+            } else {
+                List<Post> posts = new ArrayList<>(Arrays.asList(coldPosts));
+                posts.add(post);
+                freeze(posts);
+            }
+        }
+
+        synchronized void remove(Post post) {
+            if (coldPosts == null) {
+                hotPosts.remove(post);
+                NavigableSet<Post> authored = hotAuthors.get(authorKey(post));
+                if (authored != null) {
+                    authored.remove(post);
+                }
+            } else {
+                List<Post> posts = new ArrayList<>(Arrays.asList(coldPosts));
+                if (posts.remove(post)) {
+                    freeze(posts);
+                }
+            }
+        }
+
+        synchronized boolean compact() {
+            if (coldPosts != null) {
+                return false;
+            }
+            freeze(new ArrayList<>(hotPosts));
+            hotPosts = null;
+            hotAuthors = null;
+            return true;
+        }
+
+        private void freeze(List<Post> posts) {
+            posts.sort(PostStore.TIME_ORDER);
+            Map<String, List<Post>> byAuthor = new HashMap<>();
+            for (Post post : posts) {
+                byAuthor.computeIfAbsent(authorKey(post), k -> new ArrayList<>()).add(post);
+            }
+            Map<String, Post[]> authors = new HashMap<>();
+            for (Map.Entry<String, List<Post>> entry : byAuthor.entrySet()) {
+                authors.put(entry.getKey(), entry.getValue().toArray(NO_POSTS));
+            }
+            coldAuthors = authors; // Published before coldPosts, which readers check first
+            coldPosts = posts.toArray(NO_POSTS);
+        }
+
+        Iterator<Post> newestFirst(String author, Bounds bounds) {
+            // Read the hot fields first: compact() publishes the cold arrays before clearing them
+            NavigableSet<Post> hot = hotPosts;
+            Map<String, NavigableSet<Post>> hotByAuthor = hotAuthors;
+            Post[] cold = coldPosts;
+            if (cold != null) {
+                Post[] posts = author == null ? cold : coldAuthors.getOrDefault(author, NO_POSTS);
+                return coldIterator(posts, bounds);
+            }
+            NavigableSet<Post> view = author == null ? hot : hotByAuthor.get(author);
+            if (view == null || bounds.isEmpty()) {
+                return Collections.emptyIterator(); // Author never posted in this partition, or nothing is in range
+            }
+            if (bounds.lower != null) {
+                view = view.tailSet(bounds.lower, true);
+            }
+            if (bounds.upper != null) {
+                view = view.headSet(bounds.upper, bounds.upperInclusive);
+            }
+            return view.descendingIterator();
+        }
+
+        private static Iterator<Post> coldIterator(Post[] posts, Bounds bounds) {
+            // Binary search for the newest post within the upper bound, then walk back to the lower bound
+            int low = 0;
+            int high = posts.length;
+            while (bounds.upper != null && low < high) {
+                int mid = (low + high) >>> 1;
+                int comparison = PostStore.TIME_ORDER.compare(posts[mid], bounds.upper);
+                if (comparison < 0 || (comparison == 0 && bounds.upperInclusive)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int first = bounds.upper == null ? posts.length - 1 : low - 1;
+
+            return new Iterator<Post>() {
+                private int index = first;
+
+                @Override
+                public boolean hasNext() {
+                    return index >= 0 && (bounds.lower == null || PostStore.TIME_ORDER.compare(posts[index], bounds.lower) >= 0);
+                }
+
+                @Override
+                public Post next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return posts[index--];
+                }
+            };
+        }
+
+        private static String authorKey(Post post) {
+            return post.getUsername().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Precomputed home timelines (fan-out on write). Every user has a bounded, time-ordered buffer of the
+// newest posts by themselves and the people they follow. Authors with more than celebrityThreshold
+// followers are not fanned out; readers merge their recent posts in instead (fan-out on read).
+// A celebrity is only demoted once they drop below demoteThreshold, so a count hovering around the
+// threshold does not flip the author back and forth.
+public class TimelineStore {
+    private final int capacity;           // Posts kept per timeline
+    private final int celebrityThreshold; // Follower count above which an author is merged at read time
+    private final int demoteThreshold;    // Follower count below which a celebrity is fanned out again
+    private final Map<String, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Set<String> celebrities = ConcurrentHashMap.newKeySet();
+    private final Set<String> demoting = ConcurrentHashMap.newKeySet(); // Demoted, followers not backfilled yet
+
+    public TimelineStore(int capacity, int celebrityThreshold, int demoteThreshold) {
+        this.capacity = capacity;
+        this.celebrityThreshold = celebrityThreshold;
+        this.demoteThreshold = demoteThreshold;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Push a new post into the author's and the given followers' timelines; callers pass no followers for a
+    // celebrity, so a huge follower list is never materialized
+    public void fanOut(Post post, Collection<String> followers) {
+        timeline(post.getUsername()).add(post, capacity);
+        for (String follower : followers) {
+            timeline(follower).add(post, capacity);
+        }
+    }
+
+    // Bring a newly followed author's recent posts into the follower's timeline
+    public void backfill(String follower, Collection<Post> recentPosts) {
+        Timeline timeline = timeline(follower);
+        for (Post post : recentPosts) {
+            timeline.add(post, capacity);
+        }
+    }
+
+    // Whether readers merge an author's posts in: celebrities, and demoted ones until their backfill is done
+    public boolean isMergedOnRead(String author) {
+        return celebrities.contains(author) || demoting.contains(author);
+    }
+
+    // Record an author's new follower count; returns whether they are a celebrity, so not fanned out
+    public boolean updateCelebrity(String author, int followerCount) {
+        if (followerCount > celebrityThreshold) {
+            celebrities.add(author);
+            return true;
+        }
+        return celebrities.contains(author); // Inside the band a celebrity stays one until demote()
+    }
+
+    // Demote a celebrity whose follower count fell below demoteThreshold. Returns true if it did; the caller
+    // must then backfill the followers and call finishDemotion(), readers keep merging the author until then.
+    public synchronized boolean demote(String author, int followerCount) {
+        if (followerCount >= demoteThreshold || !celebrities.contains(author)) {
+            return false;
+        }
+        demoting.add(author); // Before the remove, so readers never see the author in neither set
+        celebrities.remove(author);
+        return true;
+    }
+
+    public void finishDemotion(String author) {
+        demoting.remove(author);
+    }
+
+    // Precomputed posts for a user, newest first
+    public List<Post> read(String username) {
+        Timeline timeline = timelines.get(username);
+        return timeline == null ? new ArrayList<>() : timeline.newestFirst();
+    }
+
+    public void clear() {
+        timelines.clear();
+        celebrities.clear();
+        demoting.clear();
+    }
+
+    private Timeline timeline(String username) {
+        return timelines.computeIfAbsent(username, k -> new Timeline());
+    }
+
+    // One user's buffer; the lock is per user, so fan-out to different users never contends
+    private static class Timeline {
+        private final TreeSet<Post> posts = new TreeSet<>(PostStore.TIME_ORDER);
+
+        synchronized void add(Post post, int capacity) {
+            posts.add(post);
+            if (posts.size() > capacity) {
+                posts.pollFirst(); // Drop the oldest
+            }
+        }
+
+        synchronized List<Post> newestFirst() {
+            return new ArrayList<>(posts.descendingSet());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+// Cycle through servers in proportion to their weight (-Dlb.weight.<port>, default 1), ignoring load.
+// The interleaved schedule is rebuilt only when the set of ports changes, so choosing is one counter increment.
+public class WeightedRoundRobin implements LoadBalancingStrategy {
+    private final AtomicLong next = new AtomicLong();
+    private volatile Schedule schedule = new Schedule(new int[0]);
+
+    @Override
+    public int choose(int[] ports, IntUnaryOperator load, String key) {
+        Schedule current = schedule;
+        if (current.ports != ports) {
+            current = new Schedule(ports);
+            schedule = current;
+        }
+        if (current.order.length == 0) {
+            return 0;
+        }
+        return current.order[(int) Math.floorMod(next.getAndIncrement(), (long) current.order.length)];
+    }
+
+    private static class Schedule {
+        final int[] ports;
+        final int[] order;
+
+        // Smooth weighted round robin: each round every port gains its weight, the highest is picked and pays the total
+        Schedule(int[] ports) {
+            this.ports = ports;
+            int[] weights = new int[ports.length];
+            int total = 0;
+            for (int i = 0; i < ports.length; i++) {
+                weights[i] = Math.max(1, Integer.getInteger("lb.weight." + ports[i], 1));
+                total += weights[i];
+            }
+            int[] current = new int[ports.length];
+            List<Integer> picks = new ArrayList<>(total);
+            for (int round = 0; round < total; round++) {
+                int best = 0;
+                for (int i = 0; i < ports.length; i++) {
+                    current[i] += weights[i];
+                    if (current[i] > current[best]) {
+                        best = i;
+                    }
+                }
+                current[best] -= total;
+                picks.add(ports[best]);
+            }
+            this.order = picks.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compact binary forms for the posts, stories and pages returned over RMI. Each class swaps itself for one
+// of the forms below when serialized (writeReplace), so a stream carries one small class descriptor per
+// form instead of descriptors for Instant, AtomicInteger and CopyOnWriteArrayList, and every field is
+// written by hand: varint ids and counts, timestamps as epoch millis plus the sub-millisecond remainder,
+// and strings as length-prefixed UTF-8. Every form starts with a version byte and later versions only
+// append fields: an older reader leaves them unread (the stream skips the rest of the block), and a newer
+// reader checks the version before reading fields an older writer did not send.
+public final class WireFormat {
+    static final int VERSION = 1;
+    // Lengths and counts come from the peer, anything beyond these is treated as a corrupt stream
+    private static final int MAX_STRING_BYTES = Integer.getInteger("wire.maxStringBytes", 1024 * 1024);
+    private static final int MAX_COUNT = Integer.getInteger("wire.maxCount", 1024 * 1024);
+
+    private WireFormat() {
+    }
+
+    static void writePost(DataOutput out, Post post) throws IOException {
+        writeVarint(out, post.getId());
+        writeString(out, post.getUsername());
+        writeString(out, post.getContent());
+        writeInstant(out, post.getTimestamp());
+        writeVarint(out, post.getLikes());
+        List<String> comments = post.getComments();
+        Object[] snapshot = comments.toArray(); // Comments may be added while we write
+        writeVarint(out, snapshot.length);
+        for (Object comment : snapshot) {
+            writeString(out, (String) comment);
+        }
+    }
+
+    static Post readPost(DataInput in) throws IOException {
+        int id = (int) readVarint(in);
+        String username = readString(in);
+        String content = readString(in);
+        Instant timestamp = readInstant(in);
+        int likes = (int) readVarint(in);
+        int commentCount = readCount(in);
+        List<String> comments = new ArrayList<>(Math.min(commentCount, 16));
+        for (int i = 0; i < commentCount; i++) {
+            comments.add(readString(in));
+        }
+        return new Post(id, username, content, timestamp, likes, comments);
+    }
+
+    static void writeStory(DataOutput out, Story story) throws IOException {
+        writeVarint(out, story.getId());
+        writeString(out, story.getUsername());
+        writeString(out, story.getContent());
+        writeInstant(out, story.getExpiryTime());
+    }
+
+    static Story readStory(DataInput in) throws IOException {
+        int id = (int) readVarint(in);
+        String username = readString(in);
+        String content = readString(in);
+        return new Story(id, username, content, readInstant(in));
+    }
+
+    // Unsigned LEB128: seven bits per byte, high bit set on every byte but the last
+    static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint longer than 10 bytes");
+    }
+
+    // Length + 1, so that 0 can stand for null
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        long length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length - 1 > MAX_STRING_BYTES) { // Negative once the varint overflows a long
+            throw new StreamCorruptedException("String length " + (length - 1) + " out of range");
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int readCount(DataInput in) throws IOException {
+        long count = readVarint(in);
+        if (count < 0 || count > MAX_COUNT) {
+            throw new StreamCorruptedException("Count " + count + " out of range");
+        }
+        return (int) count;
+    }
+
+    // Epoch millis (zigzag, times before 1970 stay small too) and the nanos below a millisecond, which
+    // keeps post ordering and feed cursors exact; the remainder is a single 0 byte for whole milliseconds
+    static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        long millis = instant.toEpochMilli();
+        writeVarint(out, (millis << 1) ^ (millis >> 63));
+        writeVarint(out, instant.getNano() % 1_000_000);
+    }
+
+    static Instant readInstant(DataInput in) throws IOException {
+        long zigzag = readVarint(in);
+        long millis = (zigzag >>> 1) ^ -(zigzag & 1);
+        return Instant.ofEpochMilli(millis).plusNanos(readVarint(in));
+    }
+
+    private static int readVersion(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version == 0) {
+            throw new InvalidObjectException("Unsupported wire format version " + version);
+        }
+        return version;
+    }
+
+    public static class PostForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private Post post;
+
+        public PostForm() {
+        }
+
+        PostForm(Post post) {
+            this.post = post;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(VERSION);
+            writePost(out, post);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            readVersion(in);
+            post = readPost(in);
+        }
+
+        private Object readResolve() {
+            return post;
+        }
+    }
+
+    public static class StoryForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private Story story;
+
+        public StoryForm() {
+        }
+
+        StoryForm(Story story) {
+            this.story = story;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(VERSION);
+            writeStory(out, story);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            readVersion(in);
+            story = readStory(in);
+        }
+
+        private Object readResolve() {
+            return story;
+        }
+    }
+
+    // The page's posts are written inline, without a form object per post
+    public static class PageForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private PostPage page;
+
+        public PageForm() {
+        }
+
+        PageForm(PostPage page) {
+            this.page = page;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(VERSION);
+            writeString(out, page.getNextCursor());
+            List<Post> posts = page.getPosts();
+            writeVarint(out, posts.size());
+            for (Post post : posts) {
+                writePost(out, post);
+            }
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            readVersion(in);
+            String nextCursor = readString(in);
+            int count = readCount(in);
+            List<Post> posts = new ArrayList<>(Math.min(count, 64));
+            for (int i = 0; i < count; i++) {
+                posts.add(readPost(in));
+            }
+            page = new PostPage(posts, nextCursor);
+        }
+
+        private Object readResolve() {
+            return page;
+        }
+    }
+}
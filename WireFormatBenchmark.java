@@ -0,0 +1,94 @@
+import java.io.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Round-trip check for the serialized forms of posts, stories and pages: prints the serialized size and the
+// warmed-up serialize plus deserialize time of each shape, and fails if a round trip changes a field. It only
+// uses constructors and getters that predate WireFormat, so compiling it against the tree before and after
+// that change gives the default-serialization and WireFormat numbers side by side.
+// Usage: java WireFormatBenchmark [iterations]
+public class WireFormatBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+        Random random = new Random(3); // Fixed seed so runs against different builds serialize the same data
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<String> comments = new ArrayList<>();
+            int commentCount = random.nextInt(5);
+            for (int k = 0; k < commentCount; k++) {
+                comments.add("user" + random.nextInt(500) + ": nice post " + k);
+            }
+            posts.add(new Post(1000 + i, "user" + random.nextInt(500), "Post content number " + i + " with some text",
+                    Instant.now().minusMillis(random.nextInt(1000000)), random.nextInt(100), comments));
+        }
+        List<Story> stories = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            stories.add(new Story(5000 + i, "user" + i, "story " + i, Instant.now().plusSeconds(3600)));
+        }
+        PostPage page = new PostPage(new ArrayList<>(posts.subList(0, 20)), PostPage.encodeCursor(posts.get(19)));
+
+        measure("PostPage (20 posts)", page, iterations);
+        measure("List<Post> (200)", new ArrayList<>(posts), iterations);
+        measure("List<Story> (100)", stories, iterations);
+        measure("single Post", posts.get(0), iterations * 40);
+
+        PostPage pageBack = (PostPage) roundTrip(page);
+        check(pageBack.getNextCursor().equals(page.getNextCursor()), "page cursor");
+        for (int i = 0; i < page.getPosts().size(); i++) {
+            checkPost(page.getPosts().get(i), pageBack.getPosts().get(i));
+        }
+        @SuppressWarnings("unchecked")
+        List<Story> storiesBack = (List<Story>) roundTrip(stories);
+        for (int i = 0; i < stories.size(); i++) {
+            Story before = stories.get(i);
+            Story after = storiesBack.get(i);
+            check(before.getId() == after.getId() && before.getUsername().equals(after.getUsername())
+                    && before.getContent().equals(after.getContent())
+                    && before.getExpiryTime().equals(after.getExpiryTime()), "story " + before.getId());
+        }
+        System.out.println("Round trips preserved every field");
+    }
+
+    private static void measure(String name, Object value, int iterations) throws Exception {
+        int size = serialize(value).length;
+        for (int i = 0; i < iterations; i++) {
+            roundTrip(value); // Warm up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            roundTrip(value);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / iterations;
+        System.out.printf("%-20s %7d bytes %9.1f us round trip%n", name, size, micros);
+    }
+
+    private static void checkPost(Post before, Post after) {
+        check(before.getId() == after.getId() && before.getUsername().equals(after.getUsername())
+                && before.getContent().equals(after.getContent()) && before.getLikes() == after.getLikes()
+                && before.getComments().equals(after.getComments())
+                && before.getTimestamp().equals(after.getTimestamp()), "post " + before.getId()); // Exact, cursors depend on it
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException("Round trip changed " + what);
+        }
+    }
+
+    private static Object roundTrip(Object value) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(value)))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+}
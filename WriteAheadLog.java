@@ -0,0 +1,229 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log of database mutations, split into numbered segment files (wal-<segment>.log).
+// append() only copies the record into an in-memory buffer; a background thread writes everything
+// pending in one batch and fsyncs it (group commit), so callers never wait for the disk.
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Applies one decoded record during recovery
+    public interface RecordHandler {
+        void apply(DataInputStream record) throws IOException;
+    }
+
+    private final Path directory;
+    private final long fsyncIntervalMillis; // Upper bound on how long an appended record waits for fsync
+    private final int fsyncBatchSize;       // Flush early once this many records are pending
+
+    private final Object bufferLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private int pendingRecords = 0;
+
+    private final Object channelLock = new Object(); // Guards the channel and segment number
+    private FileChannel channel;
+    private long segment;
+
+    private final Thread flusher;
+    private volatile boolean closed = false;
+
+    public WriteAheadLog(Path directory, long fsyncIntervalMillis, int fsyncBatchSize) throws IOException {
+        this.directory = directory;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.fsyncBatchSize = fsyncBatchSize;
+        Files.createDirectories(directory);
+
+        // Never append to an existing segment, its tail may be a torn record from a crash
+        this.segment = lastSegment(directory) + 1;
+        this.channel = openSegment(segment);
+
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Queue a record for the next group commit
+    public void append(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        synchronized (bufferLock) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            try {
+                pendingOut.writeInt(record.length);
+                pendingOut.writeInt((int) crc.getValue());
+                pendingOut.write(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Cannot happen for an in-memory stream
+            }
+            if (++pendingRecords >= fsyncBatchSize) {
+                bufferLock.notifyAll();
+            }
+        }
+    }
+
+    // Write and fsync everything appended so far
+    public void sync() throws IOException {
+        synchronized (channelLock) {
+            byte[] batch;
+            synchronized (bufferLock) {
+                if (pendingRecords == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                pendingRecords = 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    // Close the current segment and start a new one; returns the new segment number.
+    // Callers must make sure no append runs concurrently if they rely on the cut point.
+    public long roll() throws IOException {
+        synchronized (channelLock) {
+            sync();
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    // Remove segments fully covered by a snapshot
+    public void deleteSegmentsBefore(long firstKeptSegment) throws IOException {
+        for (long oldSegment : listSegments(directory)) {
+            if (oldSegment < firstKeptSegment) {
+                Files.deleteIfExists(segmentPath(directory, oldSegment));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (bufferLock) {
+            closed = true;
+            bufferLock.notifyAll();
+        }
+        synchronized (channelLock) {
+            sync();
+            channel.close();
+        }
+    }
+
+    // Replay every record of segments >= fromSegment in order. A torn or corrupt record ends its
+    // segment, since nothing after it in that segment was ever acknowledged as durable.
+    public static void replay(Path directory, long fromSegment, RecordHandler handler) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (long segment : listSegments(directory)) {
+            if (segment < fromSegment) {
+                continue;
+            }
+            int replayed = 0;
+            Path segmentFile = segmentPath(directory, segment);
+            long remaining = Files.size(segmentFile); // Bytes not yet read, bounds each record's claimed length
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile)))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break; // Clean end of segment
+                    }
+                    int checksum = in.readInt();
+                    remaining -= 8;
+                    if (length < 0 || length > remaining) {
+                        System.err.println("Torn record at the end of WAL segment " + segment);
+                        break; // A garbage length must not size an allocation
+                    }
+                    byte[] record = new byte[length];
+                    in.readFully(record);
+                    remaining -= length;
+
+                    CRC32 crc = new CRC32();
+                    crc.update(record);
+                    if ((int) crc.getValue() != checksum) {
+                        System.err.println("Corrupt record in WAL segment " + segment + ", skipping the rest of it");
+                        break;
+                    }
+                    handler.apply(new DataInputStream(new ByteArrayInputStream(record)));
+                    replayed++;
+                }
+            } catch (EOFException e) {
+                System.err.println("Torn record at the end of WAL segment " + segment);
+            }
+            System.out.println("Replayed " + replayed + " records from WAL segment " + segment);
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (bufferLock) {
+                    if (pendingRecords < fsyncBatchSize && !closed) {
+                        bufferLock.wait(fsyncIntervalMillis);
+                    }
+                }
+                sync();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.err.println("Failed to flush write-ahead log: " + e.getMessage());
+            }
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        FileChannel opened = FileChannel.open(segmentPath(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory(directory); // Otherwise a crash can lose the new segment's directory entry
+        return opened;
+    }
+
+    // Make file creations and renames in the directory durable. Some platforms cannot open a directory
+    // for reading, there the rename or create is as durable as the file system makes it anyway.
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            // Not supported here
+        }
+    }
+
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static long lastSegment(Path directory) throws IOException {
+        List<Long> segments = listSegments(directory);
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        segments.sort(null);
+        return segments;
+    }
+}